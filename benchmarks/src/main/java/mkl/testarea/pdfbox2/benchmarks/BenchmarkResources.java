@@ -0,0 +1,32 @@
+package mkl.testarea.pdfbox2.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * Helper methods to access the test area PDFs packaged with the benchmarks.
+ *
+ * @author mkl
+ */
+class BenchmarkResources {
+    static byte[] read(String resource) throws IOException {
+        try (InputStream inputStream = BenchmarkResources.class.getResourceAsStream(resource)) {
+            if (inputStream == null)
+                throw new IOException("Benchmark resource " + resource + " not found.");
+            return inputStream.readAllBytes();
+        }
+    }
+
+    static PDDocument load(String resource) throws IOException {
+        return PDDocument.load(read(resource));
+    }
+
+    static void close(PDDocument... documents) throws IOException {
+        for (PDDocument document : documents) {
+            if (document != null)
+                document.close();
+        }
+    }
+}
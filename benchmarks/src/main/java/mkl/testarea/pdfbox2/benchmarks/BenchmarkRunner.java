@@ -0,0 +1,29 @@
+package mkl.testarea.pdfbox2.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>
+ * Runs the benchmarks with the GC profiler attached, so that allocation
+ * rates are reported next to throughput and average time. Command line
+ * arguments are interpreted like by the JMH main class, e.g. a regular
+ * expression selecting benchmarks.
+ * </p>
+ *
+ * @author mkl
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,68 @@
+package mkl.testarea.pdfbox2.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mkl.testarea.pdfbox2.content.PdfContentStreamEditor;
+
+/**
+ * <p>
+ * Benchmarks of the identity {@link PdfContentStreamEditor} on the documents
+ * of the <code>EditPageContent</code> tests. As editing changes the document,
+ * each invocation loads the document from memory, edits all pages, and saves
+ * it to a null output stream.
+ * </p>
+ *
+ * @author mkl
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentBenchmarks {
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        input = BenchmarkResources.read("/mkl/testarea/pdfbox2/content/input.pdf");
+        document = BenchmarkResources.read("/mkl/testarea/pdfbox2/content/document.pdf");
+    }
+
+    @Benchmark
+    public void pdfContentStreamEditorInput() throws IOException {
+        edit(input);
+    }
+
+    @Benchmark
+    public void pdfContentStreamEditorDocument() throws IOException {
+        edit(document);
+    }
+
+    static void edit(byte[] bytes) throws IOException {
+        try (PDDocument pdDocument = PDDocument.load(bytes)) {
+            for (PDPage page : pdDocument.getPages()) {
+                PdfContentStreamEditor identity = new PdfContentStreamEditor(pdDocument, page);
+                identity.processPage(page);
+            }
+            pdDocument.save(OutputStream.nullOutputStream());
+        }
+    }
+
+    byte[] input;
+    byte[] document;
+}
@@ -0,0 +1,118 @@
+package mkl.testarea.pdfbox2.benchmarks;
+
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mkl.testarea.pdfbox2.extract.BoundingBoxFinder;
+import mkl.testarea.pdfbox2.extract.FreeSpaceFinder;
+import mkl.testarea.pdfbox2.extract.PDFVisibleTextStripper;
+import mkl.testarea.pdfbox2.extract.PdfBoxFinder;
+import mkl.testarea.pdfbox2.extract.PdfCheckBoxFinder;
+import mkl.testarea.pdfbox2.extract.PdfToTextInfoConverter;
+
+/**
+ * <p>
+ * Benchmarks of the extraction engines on the documents their tests use.
+ * The documents are loaded once per trial, so the benchmarks measure the
+ * engines with the document level caches of PDFBox warm.
+ * </p>
+ *
+ * @author mkl
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractBenchmarks {
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        apache = BenchmarkResources.load("/mkl/testarea/pdfbox2/extract/apache.pdf");
+        programare = BenchmarkResources.load("/mkl/testarea/pdfbox2/extract/Programare-licenta-5-Iulie-2018_1.pdf");
+        updatedForm = BenchmarkResources.load("/mkl/testarea/pdfbox2/extract/Updated_Form.pdf");
+        revTeaser = BenchmarkResources.load("/mkl/testarea/pdfbox2/extract/RevTeaser09072016.pdf");
+        dmitryK = BenchmarkResources.load("/mkl/testarea/pdfbox2/extract/test3DmitryK.pdf");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkResources.close(apache, programare, updatedForm, revTeaser, dmitryK);
+    }
+
+    @Benchmark
+    public Rectangle2D boundingBoxFinder() throws IOException {
+        PDPage page = apache.getPage(0);
+        BoundingBoxFinder finder = new BoundingBoxFinder(page);
+        finder.processPage(page);
+        return finder.getBoundingBox();
+    }
+
+    @Benchmark
+    public Collection<Rectangle2D> freeSpaceFinder() throws IOException {
+        PDPage page = apache.getPage(0);
+        FreeSpaceFinder finder = new FreeSpaceFinder(page, 20, 20);
+        finder.processPage(page);
+        return finder.getFreeSpaces();
+    }
+
+    @Benchmark
+    public List<Map<String, Rectangle2D>> pdfBoxFinder() throws IOException {
+        List<Map<String, Rectangle2D>> result = new ArrayList<>();
+        for (PDPage page : programare.getPages()) {
+            PdfBoxFinder finder = new PdfBoxFinder(page);
+            finder.processPage(page);
+            result.add(finder.getBoxes());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<PdfCheckBoxFinder.CheckBox> pdfCheckBoxFinder() throws IOException {
+        List<PdfCheckBoxFinder.CheckBox> result = new ArrayList<>();
+        for (PDPage page : updatedForm.getPages()) {
+            PdfCheckBoxFinder finder = new PdfCheckBoxFinder(page);
+            finder.processPage(page);
+            result.addAll(finder.getBoxes());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public String pdfVisibleTextStripper() throws IOException {
+        return new PDFVisibleTextStripper(true).getText(revTeaser);
+    }
+
+    @Benchmark
+    public PdfToTextInfoConverter pdfToTextInfoConverter() throws IOException {
+        PdfToTextInfoConverter converter = new PdfToTextInfoConverter(dmitryK);
+        converter.stripPage(0, 300);
+        return converter;
+    }
+
+    PDDocument apache;
+    PDDocument programare;
+    PDDocument updatedForm;
+    PDDocument revTeaser;
+    PDDocument dmitryK;
+}
@@ -0,0 +1,94 @@
+package mkl.testarea.pdfbox2.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.util.Matrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mkl.testarea.pdfbox2.merge.PdfDenseMergeTool;
+import mkl.testarea.pdfbox2.merge.PdfVeryDenseMergeTool;
+
+/**
+ * <p>
+ * Benchmarks of the dense merge tools merging 30 small text documents
+ * like the ones created in the <code>DenseMerging</code> tests. The
+ * merge result is written to a null output stream.
+ * </p>
+ *
+ * @author mkl
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MergeBenchmarks {
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        for (int i = 0; i < 30; i++) {
+            inputs.add(createTextDocument(new PDRectangle(0, 0, 400, 600), Matrix.getTranslateInstance(30 + i, 300 + i),
+                    "Doc " + i + " line 1", "Doc " + i + " line 2", "Doc " + i + " line 3"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkResources.close(inputs.toArray(new PDDocument[inputs.size()]));
+        inputs.clear();
+    }
+
+    @Benchmark
+    public void pdfDenseMergeTool() throws IOException {
+        PdfDenseMergeTool tool = new PdfDenseMergeTool(PDRectangle.A4, 30, 30, 10);
+        tool.merge(OutputStream.nullOutputStream(), inputs);
+    }
+
+    @Benchmark
+    public void pdfVeryDenseMergeTool() throws IOException {
+        PdfVeryDenseMergeTool tool = new PdfVeryDenseMergeTool(PDRectangle.A4, 30, 30, 10);
+        tool.merge(OutputStream.nullOutputStream(), inputs);
+    }
+
+    static PDDocument createTextDocument(PDRectangle size, Matrix textMatrix, String... lines) throws IOException {
+        PDDocument document = new PDDocument();
+        PDPage page = new PDPage(size);
+        document.addPage(page);
+
+        try (PDPageContentStream canvas = new PDPageContentStream(document, page)) {
+            canvas.beginText();
+            canvas.setTextMatrix(textMatrix);
+            canvas.setFont(PDType1Font.HELVETICA_BOLD, 12);
+            canvas.setLeading(14);
+            for (String line : lines) {
+                canvas.showText(line);
+                canvas.newLine();
+            }
+            canvas.endText();
+        }
+
+        return document;
+    }
+
+    final List<PDDocument> inputs = new ArrayList<>();
+}
@@ -3,10 +3,16 @@ package mkl.testarea.pdfbox2.analyze;
 import java.awt.geom.Point2D;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
@@ -28,6 +34,50 @@ public class ClipPathFinder extends PDFGraphicsStreamEngine implements Iterable<
         super(page);
     }
 
+    /**
+     * <p>
+     * In interning mode, a clip path equal to an earlier one (same winding rule,
+     * segments, and coordinates) is not stored again; instead the earlier instance
+     * is used once more and its {@link Path#getOccurrences()} count is increased.
+     * Thus, iterating this finder returns the same instance for each repetition.
+     * </p>
+     * <p>
+     * This mode should be set before finding clip paths.
+     * </p>
+     */
+    public void setInterning(boolean interning)
+    {
+        this.interning = interning;
+    }
+
+    /**
+     * Returns the distinct clip paths found in interning mode in the order
+     * of their first occurrence. If not in interning mode, this collection
+     * is empty.
+     */
+    public Collection<Path> getDistinctPaths()
+    {
+        return Collections.unmodifiableCollection(internedPaths.values());
+    }
+
+    /**
+     * Sets an {@link OperatorInstrumentation} recording per operator figures;
+     * <code>null</code> (the default) switches instrumentation off.
+     */
+    public void setInstrumentation(OperatorInstrumentation instrumentation)
+    {
+        this.instrumentation = instrumentation;
+    }
+
+    @Override
+    protected void processOperator(Operator operator, List<COSBase> operands) throws IOException
+    {
+        if (instrumentation != null)
+            instrumentation.process(operator, operands, super::processOperator);
+        else
+            super.processOperator(operator, operands);
+    }
+
     //
     // PDFGraphicsStreamEngine overrides
     //
@@ -40,7 +90,7 @@ public class ClipPathFinder extends PDFGraphicsStreamEngine implements Iterable<
     public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) throws IOException
     {
         startPathIfNecessary();
-        currentPath.appendRectangle(toFloat(p0), toFloat(p1), toFloat(p2), toFloat(p3));
+        currentPath.appendRectangle(p0, p1, p2, p3);
     }
 
     @Override
@@ -50,7 +100,23 @@ public class ClipPathFinder extends PDFGraphicsStreamEngine implements Iterable<
     public void clip(int windingRule) throws IOException
     {
         currentPath.complete(windingRule);
-        paths.add(currentPath);
+        if (interning)
+        {
+            Path internedPath = internedPaths.get(currentPath);
+            if (internedPath != null)
+            {
+                internedPath.occurrences++;
+            }
+            else
+            {
+                currentPath.trim();
+                internedPaths.put(currentPath, currentPath);
+                internedPath = currentPath;
+            }
+            paths.add(internedPath);
+        }
+        else
+            paths.add(currentPath);
         currentPath = null;
     }
 
@@ -76,7 +142,7 @@ public class ClipPathFinder extends PDFGraphicsStreamEngine implements Iterable<
     @Override
     public Point2D.Float getCurrentPoint() throws IOException
     {
-        return currentPath.getCurrentPoint();
+        return currentPath != null ? currentPath.getCurrentPoint() : null;
     }
 
     @Override
@@ -121,15 +187,6 @@ public class ClipPathFinder extends PDFGraphicsStreamEngine implements Iterable<
             currentPath = new Path();
     }
 
-    Point2D.Float toFloat(Point2D p)
-    {
-        if (p == null || (p instanceof Point2D.Float))
-        {
-            return (Point2D.Float)p;
-        }
-        return new Point2D.Float((float)p.getX(), (float)p.getY());
-    }
-
     //
     // Iterable<Path> implementation
     //
@@ -140,4 +197,7 @@ public class ClipPathFinder extends PDFGraphicsStreamEngine implements Iterable<
 
     Path currentPath = null;
     final List<Path> paths = new ArrayList<Path>();
+    boolean interning = false;
+    final Map<Path, Path> internedPaths = new LinkedHashMap<Path, Path>();
+    OperatorInstrumentation instrumentation = null;
 }
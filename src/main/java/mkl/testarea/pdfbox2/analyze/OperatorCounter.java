@@ -0,0 +1,232 @@
+package mkl.testarea.pdfbox2.analyze;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.pdfbox.contentstream.PDContentStream;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.util.Matrix;
+
+/**
+ * <p>
+ * This class counts content stream operators, a generalization of the
+ * counting code in <code>TestGraphicsCounter</code>. In contrast to that
+ * code it does not parse the whole content stream into a token list but
+ * streams the tokens one by one using {@link PDFStreamParser#parseNextToken()}.
+ * </p>
+ * <p>
+ * The counts and the content stream bytes attributed to each operator are
+ * collected in {@link OperatorStatistics} instances per page and per document.
+ * Form XObjects drawn by <code>Do</code> are descended into (unless switched
+ * off), their operators are counted once per use. The statistics of a form
+ * XObject with its own resources are cached and not parsed again. Patterns,
+ * Type 3 glyphs, and annotation appearances are not inspected.
+ * </p>
+ *
+ * @author mkl
+ */
+public class OperatorCounter
+{
+    public void setDescendIntoForms(boolean descendIntoForms)
+    {
+        this.descendIntoForms = descendIntoForms;
+    }
+
+    /**
+     * Analyzes all pages of the given document and returns the document
+     * statistics. The statistics of the individual pages thereafter are
+     * available via {@link #getPageStatistics()}.
+     */
+    public OperatorStatistics analyze(PDDocument document) throws IOException
+    {
+        formStatistics.clear();
+        pageStatistics.clear();
+        OperatorStatistics documentStatistics = new OperatorStatistics(index);
+        for (PDPage page : document.getPages())
+        {
+            OperatorStatistics statistics = analyze(page);
+            pageStatistics.add(statistics);
+            documentStatistics.add(statistics);
+        }
+        return documentStatistics;
+    }
+
+    /**
+     * Analyzes the given page and returns its statistics.
+     */
+    public OperatorStatistics analyze(PDPage page) throws IOException
+    {
+        PDResources resources = page.getResources();
+        try (InputStream contents = page.getContents())
+        {
+            return analyze(contents, resources != null ? resources.getCOSObject() : null);
+        }
+    }
+
+    public List<OperatorStatistics> getPageStatistics()
+    {
+        return Collections.unmodifiableList(pageStatistics);
+    }
+
+    //
+    // helper methods
+    //
+    OperatorStatistics analyze(InputStream contents, COSDictionary resources) throws IOException
+    {
+        OperatorStatistics statistics = new OperatorStatistics(index);
+        CountingInputStream countingStream = new CountingInputStream(contents);
+        PDFStreamParser parser = new PDFStreamParser(new ContentSource(countingStream));
+
+        long lastPosition = 0;
+        COSName lastName = null;
+        Object token;
+        while ((token = parser.parseNextToken()) != null)
+        {
+            if (token instanceof Operator)
+            {
+                String name = ((Operator) token).getName();
+                long position = countingStream.count;
+                statistics.add(index.indexOf(name), position - lastPosition);
+                lastPosition = position;
+                if (descendIntoForms && lastName != null && "Do".equals(name))
+                    addForm(statistics, lastName, resources);
+                lastName = null;
+            }
+            else
+                lastName = token instanceof COSName ? (COSName) token : null;
+        }
+        return statistics;
+    }
+
+    void addForm(OperatorStatistics statistics, COSName name, COSDictionary resources) throws IOException
+    {
+        COSBase xobjects = resources != null ? resources.getDictionaryObject(COSName.XOBJECT) : null;
+        if (!(xobjects instanceof COSDictionary))
+            return;
+        COSBase xobject = ((COSDictionary) xobjects).getDictionaryObject(name);
+        if (!(xobject instanceof COSStream))
+            return;
+        COSStream stream = (COSStream) xobject;
+        if (!COSName.FORM.equals(stream.getCOSName(COSName.SUBTYPE)) || !activeForms.add(stream))
+            return;
+
+        try
+        {
+            COSBase formResources = stream.getDictionaryObject(COSName.RESOURCES);
+            boolean cacheable = formResources instanceof COSDictionary;
+            OperatorStatistics statisticsOfForm = cacheable ? formStatistics.get(stream) : null;
+            if (statisticsOfForm == null)
+            {
+                try (InputStream contents = stream.createInputStream())
+                {
+                    statisticsOfForm = analyze(contents, cacheable ? (COSDictionary) formResources : resources);
+                }
+                if (cacheable)
+                    formStatistics.put(stream, statisticsOfForm);
+            }
+            statistics.add(statisticsOfForm);
+        }
+        finally
+        {
+            activeForms.remove(stream);
+        }
+    }
+
+    /**
+     * Counts the bytes read through it.
+     */
+    static class CountingInputStream extends FilterInputStream
+    {
+        CountingInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if (b >= 0)
+                count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int read = super.read(b, off, len);
+            if (read > 0)
+                count += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long count = 0;
+    }
+
+    /**
+     * Presents an input stream to the {@link PDFStreamParser}.
+     */
+    static class ContentSource implements PDContentStream
+    {
+        ContentSource(InputStream contents)
+        {
+            this.contents = contents;
+        }
+
+        @Override
+        public InputStream getContents() throws IOException
+        {
+            return contents;
+        }
+
+        @Override
+        public PDResources getResources()
+        {
+            return null;
+        }
+
+        @Override
+        public PDRectangle getBBox()
+        {
+            return null;
+        }
+
+        @Override
+        public Matrix getMatrix()
+        {
+            return null;
+        }
+
+        final InputStream contents;
+    }
+
+    final OperatorStatistics.Index index = new OperatorStatistics.Index();
+    final Map<COSStream, OperatorStatistics> formStatistics = new IdentityHashMap<>();
+    final Set<COSStream> activeForms = Collections.newSetFromMap(new IdentityHashMap<>());
+    final List<OperatorStatistics> pageStatistics = new ArrayList<>();
+    boolean descendIntoForms = true;
+}
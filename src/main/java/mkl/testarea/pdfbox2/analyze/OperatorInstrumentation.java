@@ -0,0 +1,302 @@
+package mkl.testarea.pdfbox2.analyze;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+
+/**
+ * <p>
+ * This class records per operator statistics of stream engines: the number
+ * of calls, the cumulative nanoseconds spent, and (if the JVM supports it)
+ * the bytes allocated by the current thread while processing the operator.
+ * </p>
+ * <p>
+ * Engines supporting it offer a <code>setInstrumentation</code> method and
+ * route their <code>processOperator</code> calls through {@link #process(Operator, List, OperatorProcessor)},
+ * e.g.
+ * </p>
+ * <pre>
+ * &#64;Override
+ * protected void processOperator(Operator operator, List&lt;COSBase&gt; operands) throws IOException {
+ *     if (instrumentation != null)
+ *         instrumentation.process(operator, operands, super::processOperator);
+ *     else
+ *         super.processOperator(operator, operands);
+ * }
+ * </pre>
+ * <p>
+ * As operators like <code>Do</code> recursively process further content streams,
+ * both the total figures (including nested operators) and the self figures (the
+ * nested operators excluded) are recorded. The counters are {@link LongAdder}
+ * instances, so one instrumentation can be shared by engines running in
+ * parallel. The figures are exported as a {@link #snapshot()} or via the
+ * getters by operator name, e.g. for a Micrometer <code>FunctionTimer</code>:
+ * </p>
+ * <pre>
+ * for (String operator : instrumentation.getOperators())
+ *     FunctionTimer.builder("pdf.operator", instrumentation,
+ *             i -&gt; i.getCount(operator), i -&gt; i.getSelfNanos(operator), TimeUnit.NANOSECONDS)
+ *         .tag("operator", operator).register(registry);
+ * </pre>
+ * <p>
+ * The allocation figures are measured using {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}
+ * and are approximate; they are all 0 if {@link #isAllocationMeasured()} returns
+ * <code>false</code>.
+ * </p>
+ *
+ * @author mkl
+ */
+public class OperatorInstrumentation
+{
+    /**
+     * The <code>processOperator</code> method to instrument.
+     */
+    public interface OperatorProcessor
+    {
+        void processOperator(Operator operator, List<COSBase> operands) throws IOException;
+    }
+
+    /**
+     * An immutable snapshot of the figures of a single operator.
+     */
+    public static class Measurement
+    {
+        Measurement(Counters counters)
+        {
+            count = counters.count.sum();
+            nanos = counters.nanos.sum();
+            selfNanos = counters.selfNanos.sum();
+            allocatedBytes = counters.allocatedBytes.sum();
+            selfAllocatedBytes = counters.selfAllocatedBytes.sum();
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public long getNanos()
+        {
+            return nanos;
+        }
+
+        public long getSelfNanos()
+        {
+            return selfNanos;
+        }
+
+        public long getAllocatedBytes()
+        {
+            return allocatedBytes;
+        }
+
+        public long getSelfAllocatedBytes()
+        {
+            return selfAllocatedBytes;
+        }
+
+        //
+        // Object override
+        //
+        @Override
+        public String toString()
+        {
+            return String.format("%10d %14d %14d %14d %14d", count, nanos, selfNanos, allocatedBytes, selfAllocatedBytes);
+        }
+
+        final long count, nanos, selfNanos, allocatedBytes, selfAllocatedBytes;
+    }
+
+    public OperatorInstrumentation()
+    {
+        this(true);
+    }
+
+    /**
+     * @param measureAllocations whether allocated bytes shall be measured if the
+     *        JVM supports it; this costs two additional MXBean calls per operator.
+     */
+    public OperatorInstrumentation(boolean measureAllocations)
+    {
+        this.threadMXBean = measureAllocations ? allocationMXBean() : null;
+    }
+
+    /**
+     * Calls the given processor for the given operator and records the figures.
+     */
+    public void process(Operator operator, List<COSBase> operands, OperatorProcessor processor) throws IOException
+    {
+        Counters counters = counters(operator.getName());
+        ThreadState state = threadState.get();
+        state.push();
+        long threadId = state.threadId;
+        long startBytes = threadMXBean != null ? threadMXBean.getThreadAllocatedBytes(threadId) : 0;
+        long startNanos = System.nanoTime();
+        try
+        {
+            processor.processOperator(operator, operands);
+        }
+        finally
+        {
+            long nanos = System.nanoTime() - startNanos;
+            long bytes = threadMXBean != null ? threadMXBean.getThreadAllocatedBytes(threadId) - startBytes : 0;
+            state.pop(nanos, bytes, counters);
+        }
+    }
+
+    public boolean isAllocationMeasured()
+    {
+        return threadMXBean != null;
+    }
+
+    /**
+     * Returns the names of the operators recorded so far.
+     */
+    public Iterable<String> getOperators()
+    {
+        return Collections.unmodifiableSet(operatorCounters.keySet());
+    }
+
+    public long getCount(String operator)
+    {
+        Counters counters = operatorCounters.get(operator);
+        return counters != null ? counters.count.sum() : 0;
+    }
+
+    public long getNanos(String operator)
+    {
+        Counters counters = operatorCounters.get(operator);
+        return counters != null ? counters.nanos.sum() : 0;
+    }
+
+    public long getSelfNanos(String operator)
+    {
+        Counters counters = operatorCounters.get(operator);
+        return counters != null ? counters.selfNanos.sum() : 0;
+    }
+
+    public double getSelfTime(String operator, TimeUnit unit)
+    {
+        return getSelfNanos(operator) / (double) unit.toNanos(1);
+    }
+
+    public long getAllocatedBytes(String operator)
+    {
+        Counters counters = operatorCounters.get(operator);
+        return counters != null ? counters.allocatedBytes.sum() : 0;
+    }
+
+    public long getSelfAllocatedBytes(String operator)
+    {
+        Counters counters = operatorCounters.get(operator);
+        return counters != null ? counters.selfAllocatedBytes.sum() : 0;
+    }
+
+    /**
+     * Returns a snapshot of the figures, sorted by operator name. Figures
+     * recorded concurrently may or may not be included.
+     */
+    public Map<String, Measurement> snapshot()
+    {
+        Map<String, Measurement> result = new TreeMap<>();
+        for (Map.Entry<String, Counters> entry : operatorCounters.entrySet())
+            result.put(entry.getKey(), new Measurement(entry.getValue()));
+        return result;
+    }
+
+    public void reset()
+    {
+        operatorCounters.clear();
+    }
+
+    //
+    // helper methods
+    //
+    Counters counters(String operator)
+    {
+        Counters counters = operatorCounters.get(operator);
+        if (counters == null)
+            counters = operatorCounters.computeIfAbsent(operator, name -> new Counters());
+        return counters;
+    }
+
+    static com.sun.management.ThreadMXBean allocationMXBean()
+    {
+        try
+        {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean)
+            {
+                com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+                if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+                    return sunBean;
+            }
+        }
+        catch (LinkageError e)
+        {
+            // not a HotSpot based JVM
+        }
+        return null;
+    }
+
+    /**
+     * The lock-free counters of a single operator.
+     */
+    static class Counters
+    {
+        final LongAdder count = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder selfNanos = new LongAdder();
+        final LongAdder allocatedBytes = new LongAdder();
+        final LongAdder selfAllocatedBytes = new LongAdder();
+    }
+
+    /**
+     * The per thread stack of the figures of nested operators, used to
+     * determine the self figures.
+     */
+    static class ThreadState
+    {
+        void push()
+        {
+            if (++depth == nestedNanos.length)
+            {
+                nestedNanos = Arrays.copyOf(nestedNanos, depth * 2);
+                nestedBytes = Arrays.copyOf(nestedBytes, depth * 2);
+            }
+            nestedNanos[depth] = 0;
+            nestedBytes[depth] = 0;
+        }
+
+        void pop(long nanos, long bytes, Counters counters)
+        {
+            counters.count.increment();
+            counters.nanos.add(nanos);
+            counters.selfNanos.add(nanos - nestedNanos[depth]);
+            counters.allocatedBytes.add(bytes);
+            counters.selfAllocatedBytes.add(bytes - nestedBytes[depth]);
+            depth--;
+            nestedNanos[depth] += nanos;
+            nestedBytes[depth] += bytes;
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        long[] nestedNanos = new long[16];
+        long[] nestedBytes = new long[16];
+        int depth = 0;
+    }
+
+    final com.sun.management.ThreadMXBean threadMXBean;
+    final Map<String, Counters> operatorCounters = new ConcurrentHashMap<>();
+    final ThreadLocal<ThreadState> threadState = ThreadLocal.withInitial(ThreadState::new);
+}
@@ -0,0 +1,164 @@
+package mkl.testarea.pdfbox2.analyze;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * A histogram of content stream operators: for each operator the number of
+ * occurrences and the number of content stream bytes attributed to it, i.e.
+ * the bytes of the operator and its operands including the whitespace before
+ * them. The values are kept in primitive arrays indexed by an operator
+ * {@link Index} shared by all statistics of an {@link OperatorCounter}.
+ * </p>
+ *
+ * @author mkl
+ */
+public class OperatorStatistics
+{
+    /**
+     * Assigns consecutive indexes to operator names.
+     */
+    static class Index
+    {
+        synchronized int indexOf(String operator)
+        {
+            Integer index = indexes.get(operator);
+            if (index == null)
+            {
+                index = names.size();
+                indexes.put(operator, index);
+                names.add(operator);
+            }
+            return index;
+        }
+
+        synchronized int lookup(String operator)
+        {
+            Integer index = indexes.get(operator);
+            return index != null ? index : -1;
+        }
+
+        synchronized String nameOf(int index)
+        {
+            return names.get(index);
+        }
+
+        final Map<String, Integer> indexes = new HashMap<>();
+        final List<String> names = new ArrayList<>();
+    }
+
+    OperatorStatistics(Index index)
+    {
+        this.index = index;
+    }
+
+    public long getCount(String operator)
+    {
+        int i = index.lookup(operator);
+        return i >= 0 && i < counts.length ? counts[i] : 0;
+    }
+
+    public long getBytes(String operator)
+    {
+        int i = index.lookup(operator);
+        return i >= 0 && i < bytes.length ? bytes[i] : 0;
+    }
+
+    public long getTotalCount()
+    {
+        long total = 0;
+        for (long count : counts)
+            total += count;
+        return total;
+    }
+
+    public long getTotalBytes()
+    {
+        long total = 0;
+        for (long count : bytes)
+            total += count;
+        return total;
+    }
+
+    /**
+     * Returns the occurrence counts by operator, sorted by decreasing count.
+     */
+    public Map<String, Long> getCounts()
+    {
+        return toMap(counts);
+    }
+
+    /**
+     * Returns the attributed bytes by operator, sorted by decreasing byte count.
+     */
+    public Map<String, Long> getBytes()
+    {
+        return toMap(bytes);
+    }
+
+    void add(int operator, long byteCount)
+    {
+        ensureCapacity(operator + 1);
+        counts[operator]++;
+        bytes[operator] += byteCount;
+    }
+
+    void add(OperatorStatistics other)
+    {
+        ensureCapacity(other.counts.length);
+        for (int i = 0; i < other.counts.length; i++)
+        {
+            counts[i] += other.counts[i];
+            bytes[i] += other.bytes[i];
+        }
+    }
+
+    void ensureCapacity(int size)
+    {
+        if (counts.length < size)
+        {
+            int newSize = Math.max(size, counts.length * 2);
+            counts = Arrays.copyOf(counts, newSize);
+            bytes = Arrays.copyOf(bytes, newSize);
+        }
+    }
+
+    Map<String, Long> toMap(long[] values)
+    {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < values.length; i++)
+        {
+            if (counts[i] > 0)
+                indexes.add(i);
+        }
+        indexes.sort((a, b) -> Long.compare(values[b], values[a]));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i : indexes)
+            result.put(index.nameOf(i), values[i]);
+        return result;
+    }
+
+    //
+    // Object override
+    //
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        Map<String, Long> byteMap = getBytes();
+        for (Map.Entry<String, Long> entry : getCounts().entrySet())
+        {
+            builder.append(String.format("%-6s %10d %12d\n", entry.getKey(), entry.getValue(), byteMap.get(entry.getKey())));
+        }
+        return builder.toString();
+    }
+
+    final Index index;
+    long[] counts = new long[0];
+    long[] bytes = new long[0];
+}
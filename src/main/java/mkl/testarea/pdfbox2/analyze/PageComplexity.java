@@ -0,0 +1,106 @@
+package mkl.testarea.pdfbox2.analyze;
+
+/**
+ * <p>
+ * The complexity figures of a page (or form XObject) determined by the
+ * {@link PageComplexityProfiler}. The figures of form XObjects are included
+ * once per use.
+ * </p>
+ *
+ * @author mkl
+ */
+public class PageComplexity
+{
+    /**
+     * The number of content stream operators.
+     */
+    public long getOperatorCount()
+    {
+        return operatorCount;
+    }
+
+    /**
+     * The (estimated) number of glyphs drawn, derived from the string
+     * lengths and the font type without loading fonts.
+     */
+    public long getGlyphCount()
+    {
+        return glyphCount;
+    }
+
+    /**
+     * The number of path segments, counting <code>l</code>, <code>c</code>,
+     * <code>v</code>, <code>y</code>, and <code>h</code> once and <code>re</code>
+     * four times.
+     */
+    public long getPathSegmentCount()
+    {
+        return pathSegmentCount;
+    }
+
+    /**
+     * The number of images drawn, inline images included.
+     */
+    public long getImageCount()
+    {
+        return imageCount;
+    }
+
+    /**
+     * The sum of the pixel areas (width times height in image samples)
+     * of the images drawn.
+     */
+    public long getImagePixelArea()
+    {
+        return imagePixelArea;
+    }
+
+    /**
+     * The number of form XObjects drawn.
+     */
+    public long getFormCount()
+    {
+        return formCount;
+    }
+
+    /**
+     * The maximum nesting depth of XObjects; 0 if no XObjects are drawn,
+     * 1 if only XObjects are drawn which themselves draw no XObjects, etc.
+     */
+    public int getXObjectDepth()
+    {
+        return xObjectDepth;
+    }
+
+    /**
+     * Adds the figures of a form XObject drawn.
+     */
+    void addForm(PageComplexity form)
+    {
+        operatorCount += form.operatorCount;
+        glyphCount += form.glyphCount;
+        pathSegmentCount += form.pathSegmentCount;
+        imageCount += form.imageCount;
+        imagePixelArea += form.imagePixelArea;
+        formCount += form.formCount + 1;
+        xObjectDepth = Math.max(xObjectDepth, form.xObjectDepth + 1);
+    }
+
+    //
+    // Object override
+    //
+    @Override
+    public String toString()
+    {
+        return String.format("[Operators: %d; Glyphs: %d; Path segments: %d; Images: %d (%d pixels); Forms: %d; XObject depth: %d]",
+                operatorCount, glyphCount, pathSegmentCount, imageCount, imagePixelArea, formCount, xObjectDepth);
+    }
+
+    long operatorCount = 0;
+    long glyphCount = 0;
+    long pathSegmentCount = 0;
+    long imageCount = 0;
+    long imagePixelArea = 0;
+    long formCount = 0;
+    int xObjectDepth = 0;
+}
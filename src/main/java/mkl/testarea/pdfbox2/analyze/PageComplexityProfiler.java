@@ -0,0 +1,210 @@
+package mkl.testarea.pdfbox2.analyze;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+
+/**
+ * <p>
+ * This class estimates the processing cost of pages in a single streaming
+ * scan of their content streams, cheap enough to run on every incoming page
+ * before choosing which engine (e.g. text extraction, free space finding, or
+ * rendering) to apply and where.
+ * </p>
+ * <p>
+ * It determines operator, glyph, path segment, and image counts, image pixel
+ * areas, and the XObject nesting depth, see {@link PageComplexity}. Neither
+ * fonts nor images are loaded: glyph counts are derived from string lengths
+ * assuming two bytes per code for composite fonts and one byte otherwise,
+ * image areas from the image dictionaries. Form XObjects are descended into;
+ * the figures of form XObjects with own resources are cached by stream
+ * identity, so use one profiler instance per document.
+ * </p>
+ *
+ * @author mkl
+ */
+public class PageComplexityProfiler
+{
+    public List<PageComplexity> profile(PDDocument document) throws IOException
+    {
+        List<PageComplexity> result = new ArrayList<>();
+        for (PDPage page : document.getPages())
+            result.add(profile(page));
+        return result;
+    }
+
+    public PageComplexity profile(PDPage page) throws IOException
+    {
+        PDResources resources = page.getResources();
+        try (InputStream contents = page.getContents())
+        {
+            return profile(contents, resources != null ? resources.getCOSObject() : null);
+        }
+    }
+
+    //
+    // helper methods
+    //
+    PageComplexity profile(InputStream contents, COSDictionary resources) throws IOException
+    {
+        PageComplexity complexity = new PageComplexity();
+        PDFStreamParser parser = new PDFStreamParser(new OperatorCounter.ContentSource(contents));
+        Map<COSName, Integer> bytesPerCodeByFont = new HashMap<>();
+        Deque<Integer> bytesPerCodeStack = new ArrayDeque<>();
+        int bytesPerCode = 1;
+        List<COSBase> operands = new ArrayList<>();
+
+        Object token;
+        while ((token = parser.parseNextToken()) != null)
+        {
+            if (!(token instanceof Operator))
+            {
+                operands.add((COSBase) token);
+                continue;
+            }
+
+            Operator operator = (Operator) token;
+            complexity.operatorCount++;
+            switch (operator.getName())
+            {
+            case "l":
+            case "c":
+            case "v":
+            case "y":
+            case "h":
+                complexity.pathSegmentCount++;
+                break;
+            case "re":
+                complexity.pathSegmentCount += 4;
+                break;
+            case "q":
+                bytesPerCodeStack.push(bytesPerCode);
+                break;
+            case "Q":
+                if (!bytesPerCodeStack.isEmpty())
+                    bytesPerCode = bytesPerCodeStack.pop();
+                break;
+            case "Tf":
+                if (!operands.isEmpty() && operands.get(0) instanceof COSName)
+                    bytesPerCode = bytesPerCodeByFont.computeIfAbsent((COSName) operands.get(0), name -> bytesPerCode(resources, name));
+                break;
+            case "Tj":
+            case "'":
+            case "\"":
+                if (!operands.isEmpty() && operands.get(operands.size() - 1) instanceof COSString)
+                    complexity.glyphCount += ((COSString) operands.get(operands.size() - 1)).getBytes().length / bytesPerCode;
+                break;
+            case "TJ":
+                if (!operands.isEmpty() && operands.get(0) instanceof COSArray)
+                {
+                    for (COSBase element : (COSArray) operands.get(0))
+                    {
+                        if (element instanceof COSString)
+                            complexity.glyphCount += ((COSString) element).getBytes().length / bytesPerCode;
+                    }
+                }
+                break;
+            case "BI":
+                addImage(complexity, operator.getImageParameters());
+                break;
+            case "Do":
+                if (!operands.isEmpty() && operands.get(0) instanceof COSName)
+                    addXObject(complexity, (COSName) operands.get(0), resources);
+                break;
+            default:
+                break;
+            }
+            operands.clear();
+        }
+        return complexity;
+    }
+
+    void addXObject(PageComplexity complexity, COSName name, COSDictionary resources) throws IOException
+    {
+        COSBase xobjects = resources != null ? resources.getDictionaryObject(COSName.XOBJECT) : null;
+        if (!(xobjects instanceof COSDictionary))
+            return;
+        COSBase xobject = ((COSDictionary) xobjects).getDictionaryObject(name);
+        if (!(xobject instanceof COSStream))
+            return;
+        COSStream stream = (COSStream) xobject;
+        COSName subtype = stream.getCOSName(COSName.SUBTYPE);
+        if (COSName.IMAGE.equals(subtype))
+        {
+            addImage(complexity, stream);
+            complexity.xObjectDepth = Math.max(complexity.xObjectDepth, 1);
+        }
+        else if (COSName.FORM.equals(subtype) && activeForms.add(stream))
+        {
+            try
+            {
+                COSBase formResources = stream.getDictionaryObject(COSName.RESOURCES);
+                boolean cacheable = formResources instanceof COSDictionary;
+                PageComplexity formComplexity = cacheable ? formCache.get(stream) : null;
+                if (formComplexity == null)
+                {
+                    try (InputStream contents = stream.createInputStream())
+                    {
+                        formComplexity = profile(contents, cacheable ? (COSDictionary) formResources : resources);
+                    }
+                    if (cacheable)
+                        formCache.put(stream, formComplexity);
+                }
+                complexity.addForm(formComplexity);
+            }
+            finally
+            {
+                activeForms.remove(stream);
+            }
+        }
+    }
+
+    static void addImage(PageComplexity complexity, COSDictionary image)
+    {
+        complexity.imageCount++;
+        if (image != null)
+            complexity.imagePixelArea += (long) intValue(image, COSName.W, COSName.WIDTH) * intValue(image, COSName.H, COSName.HEIGHT);
+    }
+
+    static int intValue(COSDictionary dictionary, COSName abbreviation, COSName key)
+    {
+        COSBase value = dictionary.getDictionaryObject(abbreviation, key);
+        return value instanceof COSNumber ? Math.max(0, ((COSNumber) value).intValue()) : 0;
+    }
+
+    static int bytesPerCode(COSDictionary resources, COSName fontName)
+    {
+        COSBase fonts = resources != null ? resources.getDictionaryObject(COSName.FONT) : null;
+        if (fonts instanceof COSDictionary)
+        {
+            COSBase font = ((COSDictionary) fonts).getDictionaryObject(fontName);
+            if (font instanceof COSDictionary && COSName.TYPE0.equals(((COSDictionary) font).getCOSName(COSName.SUBTYPE)))
+                return 2;
+        }
+        return 1;
+    }
+
+    final Map<COSStream, PageComplexity> formCache = new IdentityHashMap<>();
+    final Set<COSStream> activeForms = Collections.newSetFromMap(new IdentityHashMap<>());
+}
@@ -2,9 +2,9 @@ package mkl.testarea.pdfbox2.analyze;
 
 import java.awt.geom.Point2D;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * <a href="http://stackoverflow.com/questions/28321374/how-to-get-page-content-height-using-pdfbox">
@@ -13,39 +13,47 @@ import java.util.List;
  * <p>
  * A helper class to represent clip paths.
  * </p>
- * 
+ * <p>
+ * Like {@link java.awt.geom.Path2D.Float} this class stores the path compactly
+ * in a <code>float[]</code> of coordinates and a <code>byte[]</code> of segment
+ * types. The {@link SubPath} and {@link Segment} instances returned while iterating
+ * are lightweight views created on demand, and so are the points they return.
+ * </p>
+ *
  * @author mkl
  */
 public class Path implements Iterable<Path.SubPath>
 {
     public static class Segment
     {
-        Segment(Point2D.Float start, Point2D.Float end)
+        Segment(float[] coords, int startOffset, int endOffset)
         {
-            this.start = start;
-            this.end = end;
+            this.coords = coords;
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
         }
 
         public Point2D.Float getStart()
         {
-            return start;
+            return new Point2D.Float(coords[startOffset], coords[startOffset + 1]);
         }
 
         public Point2D.Float getEnd()
         {
-            return end;
+            return new Point2D.Float(coords[endOffset], coords[endOffset + 1]);
         }
 
-        final Point2D.Float start, end; 
+        final float[] coords;
+        final int startOffset, endOffset;
     }
 
     public class SubPath implements Iterable<Segment>
     {
         public class Line extends Segment
         {
-            Line(Point2D.Float start, Point2D.Float end)
+            Line(int startOffset, int endOffset)
             {
-                super(start, end);
+                super(Path.this.coords, startOffset, endOffset);
             }
 
             //
@@ -56,9 +64,9 @@ public class Path implements Iterable<Path.SubPath>
             {
                 StringBuilder builder = new StringBuilder();
                 builder.append("    Line to: ")
-                       .append(end.getX())
+                       .append((double) coords[endOffset])
                        .append(", ")
-                       .append(end.getY())
+                       .append((double) coords[endOffset + 1])
                        .append('\n');
                 return builder.toString();
             }
@@ -66,21 +74,21 @@ public class Path implements Iterable<Path.SubPath>
 
         public class Curve extends Segment
         {
-            Curve(Point2D.Float start, Point2D.Float control1, Point2D.Float control2, Point2D.Float end)
+            Curve(int startOffset, int control1Offset, int control2Offset, int endOffset)
             {
-                super(start, end);
-                this.control1 = control1;
-                this.control2 = control2;
+                super(Path.this.coords, startOffset, endOffset);
+                this.control1Offset = control1Offset;
+                this.control2Offset = control2Offset;
             }
 
             public Point2D getControl1()
             {
-                return control1;
+                return new Point2D.Float(coords[control1Offset], coords[control1Offset + 1]);
             }
 
             public Point2D getControl2()
             {
-                return control2;
+                return new Point2D.Float(coords[control2Offset], coords[control2Offset + 1]);
             }
 
             //
@@ -91,55 +99,44 @@ public class Path implements Iterable<Path.SubPath>
             {
                 StringBuilder builder = new StringBuilder();
                 builder.append("    Curve to: ")
-                       .append(end.getX())
+                       .append((double) coords[endOffset])
                        .append(", ")
-                       .append(end.getY())
+                       .append((double) coords[endOffset + 1])
                        .append(" with Control1: ")
-                       .append(control1.getX())
+                       .append((double) coords[control1Offset])
                        .append(", ")
-                       .append(control1.getY())
+                       .append((double) coords[control1Offset + 1])
                        .append(" and Control2: ")
-                       .append(control2.getX())
+                       .append((double) coords[control2Offset])
                        .append(", ")
-                       .append(control2.getY())
+                       .append((double) coords[control2Offset + 1])
                        .append('\n');
                 return builder.toString();
             }
 
-            final Point2D control1, control2; 
+            final int control1Offset, control2Offset;
         }
 
-        SubPath(Point2D.Float start)
+        SubPath(int typeStart, int typeEnd, int coordStart)
         {
-            this.start = start;
-            currentPoint = start;
+            this.typeStart = typeStart;
+            this.typeEnd = typeEnd;
+            this.coordStart = coordStart;
         }
 
         public Point2D getStart()
         {
-            return start;
-        }
-
-        void lineTo(float x, float y)
-        {
-            Point2D.Float end = new Point2D.Float(x, y);
-            segments.add(new Line(currentPoint, end));
-            currentPoint = end;
+            return new Point2D.Float(coords[coordStart], coords[coordStart + 1]);
         }
 
-        void curveTo(float x1, float y1, float x2, float y2, float x3, float y3)
+        public boolean isClosed()
         {
-            Point2D.Float control1 = new Point2D.Float(x1, y1);
-            Point2D.Float control2 = new Point2D.Float(x2, y2);
-            Point2D.Float end = new Point2D.Float(x3, y3);
-            segments.add(new Curve(currentPoint, control1, control2, end));
-            currentPoint = end;
-        }
-
-        void closePath()
-        {
-            closed = true;
-            currentPoint = start;
+            for (int i = typeStart + 1; i < typeEnd; i++)
+            {
+                if (types[i] == SEG_CLOSE)
+                    return true;
+            }
+            return false;
         }
 
         //
@@ -147,7 +144,45 @@ public class Path implements Iterable<Path.SubPath>
         //
         public Iterator<Segment> iterator()
         {
-            return segments.iterator();
+            return new Iterator<Segment>()
+            {
+                @Override
+                public boolean hasNext()
+                {
+                    while (typeIndex < typeEnd && types[typeIndex] == SEG_CLOSE)
+                    {
+                        currentOffset = coordStart;
+                        typeIndex++;
+                    }
+                    return typeIndex < typeEnd;
+                }
+
+                @Override
+                public Segment next()
+                {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    Segment segment;
+                    if (types[typeIndex] == SEG_LINETO)
+                    {
+                        segment = new Line(currentOffset, coordIndex);
+                        currentOffset = coordIndex;
+                        coordIndex += 2;
+                    }
+                    else
+                    {
+                        segment = new Curve(currentOffset, coordIndex, coordIndex + 2, coordIndex + 4);
+                        currentOffset = coordIndex + 4;
+                        coordIndex += 6;
+                    }
+                    typeIndex++;
+                    return segment;
+                }
+
+                int typeIndex = typeStart + 1;
+                int coordIndex = coordStart + 2;
+                int currentOffset = coordStart;
+            };
         }
 
         //
@@ -155,35 +190,34 @@ public class Path implements Iterable<Path.SubPath>
         //
         @Override
         public String toString()
+        {
+            return toString("  {\n    Start at: ");
+        }
+
+        String toString(String prefix)
         {
             StringBuilder builder = new StringBuilder();
-            builder.append("  {\n    Start at: ")
-                   .append(start.getX())
+            builder.append(prefix)
+                   .append((double) coords[coordStart])
                    .append(", ")
-                   .append(start.getY())
+                   .append((double) coords[coordStart + 1])
                    .append('\n');
-            for (Segment segment : segments)
+            for (Segment segment : this)
                 builder.append(segment);
-            if (closed)
+            if (isClosed())
                 builder.append("    Closed\n");
             builder.append("  }\n");
             return builder.toString();
         }
 
-        boolean closed = false;
-        final Point2D.Float start;
-        final List<Segment> segments = new ArrayList<Path.Segment>();
+        final int typeStart, typeEnd, coordStart;
     }
 
     public class Rectangle extends SubPath
     {
-        Rectangle(Point2D.Float p0, Point2D.Float p1, Point2D.Float p2, Point2D.Float p3)
+        Rectangle(int typeStart, int typeEnd, int coordStart)
         {
-            super(p0);
-            lineTo((float)p1.getX(), (float)p1.getY());
-            lineTo((float)p2.getX(), (float)p2.getY());
-            lineTo((float)p3.getX(), (float)p3.getY());
-            closePath();
+            super(typeStart, typeEnd, coordStart);
         }
 
         //
@@ -192,18 +226,7 @@ public class Path implements Iterable<Path.SubPath>
         @Override
         public String toString()
         {
-            StringBuilder builder = new StringBuilder();
-            builder.append("  {\n    Rectangle\n    Start at: ")
-                   .append(start.getX())
-                   .append(", ")
-                   .append(start.getY())
-                   .append('\n');
-            for (Segment segment : segments)
-                builder.append(segment);
-            if (closed)
-                builder.append("    Closed\n");
-            builder.append("  }\n");
-            return builder.toString();
+            return toString("  {\n    Rectangle\n    Start at: ");
         }
     }
 
@@ -212,53 +235,136 @@ public class Path implements Iterable<Path.SubPath>
         return windingRule;
     }
 
+    /**
+     * Returns the number of coordinates (two per point) stored in this path.
+     */
+    public int getCoordinateCount()
+    {
+        return numCoords;
+    }
+
+    /**
+     * Returns the number of segment types, i.e. of sub path starts,
+     * lines, curves, and closes, stored in this path.
+     */
+    public int getSegmentTypeCount()
+    {
+        return numTypes;
+    }
+
+    /**
+     * Returns how often this path has been used. This is 1 unless the path
+     * has been interned by a {@link ClipPathFinder} in interning mode.
+     */
+    public int getOccurrences()
+    {
+        return occurrences;
+    }
+
     void complete(int windingRule)
     {
         finishSubPath();
         this.windingRule = windingRule;
     }
 
-    void appendRectangle(Point2D.Float p0, Point2D.Float p1, Point2D.Float p2, Point2D.Float p3) throws IOException
+    /**
+     * Shrinks the arrays to the actually used size. Only call this
+     * for completed paths.
+     */
+    void trim()
     {
-        finishSubPath();
-        currentSubPath = new Rectangle(p0, p1, p2, p3);
-        finishSubPath();
+        types = Arrays.copyOf(types, numTypes);
+        coords = Arrays.copyOf(coords, numCoords);
+    }
+
+    void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) throws IOException
+    {
+        startSubPath(SEG_RECTANGLE, (float)p0.getX(), (float)p0.getY());
+        lineTo((float)p1.getX(), (float)p1.getY());
+        lineTo((float)p2.getX(), (float)p2.getY());
+        lineTo((float)p3.getX(), (float)p3.getY());
+        closePath();
     }
 
     void moveTo(float x, float y) throws IOException
     {
-        finishSubPath();
-        currentSubPath = new SubPath(new Point2D.Float(x, y));
+        startSubPath(SEG_MOVETO, x, y);
     }
 
     void lineTo(float x, float y) throws IOException
     {
-        currentSubPath.lineTo(x, y);
+        startSubPathIfNecessary(x, y);
+        appendType(SEG_LINETO);
+        appendCoords(x, y);
     }
 
     void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) throws IOException
     {
-        currentSubPath.curveTo(x1, y1, x2, y2, x3, y3);
+        startSubPathIfNecessary(x1, y1);
+        appendType(SEG_CUBICTO);
+        appendCoords(x1, y1);
+        appendCoords(x2, y2);
+        appendCoords(x3, y3);
     }
 
     Point2D.Float getCurrentPoint() throws IOException
     {
-        return currentPoint;
+        return currentPointOffset < 0 ? null : new Point2D.Float(coords[currentPointOffset], coords[currentPointOffset + 1]);
     }
 
     void closePath() throws IOException
     {
-        currentSubPath.closePath();
+        if (subPathStartOffset < 0)
+            return;
+        appendType(SEG_CLOSE);
+        currentPointOffset = subPathStartOffset;
         finishSubPath();
     }
 
     void finishSubPath()
     {
-        if (currentSubPath != null)
-        {
-            subPaths.add(currentSubPath);
-            currentSubPath = null;
-        }
+        subPathStartOffset = -1;
+    }
+
+    void startSubPath(byte type, float x, float y)
+    {
+        appendType(type);
+        subPathStartOffset = numCoords;
+        appendCoords(x, y);
+    }
+
+    /**
+     * After a close a new sub path implicitly starts at the current point.
+     */
+    void startSubPathIfNecessary(float x, float y)
+    {
+        if (subPathStartOffset >= 0)
+            return;
+        if (currentPointOffset >= 0)
+            startSubPath(SEG_MOVETO, coords[currentPointOffset], coords[currentPointOffset + 1]);
+        else
+            startSubPath(SEG_MOVETO, x, y);
+    }
+
+    void appendType(byte type)
+    {
+        if (numTypes == types.length)
+            types = Arrays.copyOf(types, Math.max(16, types.length * 2));
+        types[numTypes++] = type;
+    }
+
+    void appendCoords(float x, float y)
+    {
+        if (numCoords + 2 > coords.length)
+            coords = Arrays.copyOf(coords, Math.max(32, coords.length * 2));
+        currentPointOffset = numCoords;
+        coords[numCoords++] = x;
+        coords[numCoords++] = y;
+    }
+
+    static boolean isSubPathStart(byte type)
+    {
+        return type == SEG_MOVETO || type == SEG_RECTANGLE;
     }
 
     //
@@ -266,12 +372,77 @@ public class Path implements Iterable<Path.SubPath>
     //
     public Iterator<SubPath> iterator()
     {
-        return subPaths.iterator();
+        return new Iterator<SubPath>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return typeIndex < numTypes;
+            }
+
+            @Override
+            public SubPath next()
+            {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                int typeStart = typeIndex;
+                int coordStart = coordIndex;
+                typeIndex++;
+                coordIndex += 2;
+                while (typeIndex < numTypes && !isSubPathStart(types[typeIndex]))
+                {
+                    coordIndex += COORD_COUNTS[types[typeIndex]];
+                    typeIndex++;
+                }
+                return types[typeStart] == SEG_RECTANGLE ? new Rectangle(typeStart, typeIndex, coordStart) : new SubPath(typeStart, typeIndex, coordStart);
+            }
+
+            int typeIndex = 0;
+            int coordIndex = 0;
+        };
     }
 
     //
-    // Object override
+    // Object overrides
     //
+    /**
+     * Paths are equal if they have the same winding rule and the same
+     * segments with the same coordinates.
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof Path))
+            return false;
+        Path other = (Path) obj;
+        if (windingRule != other.windingRule || numTypes != other.numTypes || numCoords != other.numCoords)
+            return false;
+        for (int i = 0; i < numTypes; i++)
+        {
+            if (types[i] != other.types[i])
+                return false;
+        }
+        for (int i = 0; i < numCoords; i++)
+        {
+            if (Float.floatToIntBits(coords[i]) != Float.floatToIntBits(other.coords[i]))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = windingRule;
+        for (int i = 0; i < numTypes; i++)
+            result = 31 * result + types[i];
+        for (int i = 0; i < numCoords; i++)
+            result = 31 * result + Float.floatToIntBits(coords[i]);
+        return result;
+    }
+
     @Override
     public String toString()
     {
@@ -279,14 +450,25 @@ public class Path implements Iterable<Path.SubPath>
         builder.append("{\n  Winding: ")
                .append(windingRule)
                .append('\n');
-        for (SubPath subPath : subPaths)
+        for (SubPath subPath : this)
             builder.append(subPath);
         builder.append("}\n");
         return builder.toString();
     }
 
-    Point2D.Float currentPoint = null;
-    SubPath currentSubPath = null;
+    final static byte SEG_MOVETO = 0;
+    final static byte SEG_RECTANGLE = 1;
+    final static byte SEG_LINETO = 2;
+    final static byte SEG_CUBICTO = 3;
+    final static byte SEG_CLOSE = 4;
+    final static int[] COORD_COUNTS = {2, 2, 2, 6, 0};
+
+    byte[] types = new byte[16];
+    float[] coords = new float[32];
+    int numTypes = 0;
+    int numCoords = 0;
+    int subPathStartOffset = -1;
+    int currentPointOffset = -1;
     int windingRule = -1;
-    final List<SubPath> subPaths = new ArrayList<Path.SubPath>();
+    int occurrences = 1;
 }
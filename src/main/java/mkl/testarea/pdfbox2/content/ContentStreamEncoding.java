@@ -0,0 +1,82 @@
+package mkl.testarea.pdfbox2.content;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+
+/**
+ * <p>
+ * This interface represents a strategy to encode the content streams written by the
+ * {@link PdfContentStreamEditor}. The predefined strategies are
+ * </p>
+ * <ul>
+ * <li>{@link #NONE} - no filter at all, fastest, largest output;
+ * <li>{@link #FAST} - Flate with {@link Deflater#BEST_SPEED};
+ * <li>{@link #DEFAULT} - Flate with the PDFBox default level;
+ * <li>{@link #BEST} - Flate with {@link Deflater#BEST_COMPRESSION};
+ * <li>{@link #ORIGINAL} - the filters of the original stream.
+ * </ul>
+ *
+ * @author mkl
+ */
+public interface ContentStreamEncoding {
+    /**
+     * Creates an output stream to write the unencoded content of the target stream
+     * to. The original stream, if not <code>null</code>, is the stream (or the first
+     * of the streams) the target stream replaces; it may also be the target stream
+     * itself. The returned output stream must be closed by the caller.
+     */
+    OutputStream createOutputStream(COSStream target, COSStream original) throws IOException;
+
+    ContentStreamEncoding NONE = (target, original) -> {
+        target.removeItem(COSName.FILTER);
+        target.removeItem(COSName.DECODE_PARMS);
+        return target.createOutputStream();
+    };
+
+    ContentStreamEncoding FAST = deflate(Deflater.BEST_SPEED);
+
+    ContentStreamEncoding DEFAULT = (target, original) -> {
+        target.removeItem(COSName.DECODE_PARMS);
+        return target.createOutputStream(COSName.FLATE_DECODE);
+    };
+
+    ContentStreamEncoding BEST = deflate(Deflater.BEST_COMPRESSION);
+
+    ContentStreamEncoding ORIGINAL = (target, original) -> {
+        if (original == null)
+            return DEFAULT.createOutputStream(target, original);
+        COSBase filters = original.getFilters();
+        if (filters == null)
+            return NONE.createOutputStream(target, original);
+        // Decode parameters are not supported by the PDFBox encoders, so they are dropped.
+        target.removeItem(COSName.DECODE_PARMS);
+        return target.createOutputStream(filters);
+    };
+
+    /**
+     * Creates a strategy encoding using Flate at the given {@link Deflater} level.
+     */
+    static ContentStreamEncoding deflate(int level) {
+        return (target, original) -> {
+            target.removeItem(COSName.DECODE_PARMS);
+            target.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+            Deflater deflater = new Deflater(level);
+            return new DeflaterOutputStream(target.createRawOutputStream(), deflater) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            };
+        };
+    }
+}
@@ -99,14 +99,19 @@ public class HelloSignAnalyzer extends PDFTextStripper
         {
             for (TextPosition textPosition : textPositions)
             {
-                if (inField(textPosition))
-                {
-                    float textX = textPosition.getTextMatrix().getTranslateX();
-                    if (textX > lastX + textPosition.getWidthOfSpace() / 2 && value.length() > 0)
-                        value += " ";
-                    value += textPosition.getUnicode();
-                    lastX = textX + textPosition.getWidth();
-                }
+                checkForValue(textPosition);
+            }
+        }
+
+        void checkForValue(TextPosition textPosition)
+        {
+            if (inField(textPosition))
+            {
+                float textX = textPosition.getTextMatrix().getTranslateX();
+                if (textX > lastX + textPosition.getWidthOfSpace() / 2 && value.length() > 0)
+                    value += " ";
+                value += textPosition.getUnicode();
+                lastX = textX + textPosition.getWidth();
             }
         }
 
@@ -141,6 +146,7 @@ public class HelloSignAnalyzer extends PDFTextStripper
         if (!analyzed)
         {
             fields = new HashMap<>();
+            fieldIndex = new HelloSignFieldIndex();
 
             setStartPage(pdDocument.getNumberOfPages());
             getText(pdDocument);
@@ -161,10 +167,11 @@ public class HelloSignAnalyzer extends PDFTextStripper
     @Override
     protected void writeString(String text, List<TextPosition> textPositions) throws IOException
     {
+        for (TextPosition textPosition : textPositions)
         {
-            for (HelloSignField field : fields.values())
+            for (HelloSignField field : fieldIndex.candidates(textPosition.getTextMatrix().getTranslateY()))
             {
-                field.checkForValue(textPositions);
+                field.checkForValue(textPosition);
             }
         }
 
@@ -183,10 +190,12 @@ public class HelloSignAnalyzer extends PDFTextStripper
                 HelloSignField field = getOrCreateField(fieldName);
 
                 TextPosition start = textPositions.get(position);
+                fieldIndex.remove(field);
                 field.x = start.getTextMatrix().getTranslateX();
                 field.y = start.getTextMatrix().getTranslateY();
                 TextPosition end = textPositions.get(endPosition);
                 field.width = end.getTextMatrix().getTranslateX() + end.getWidth() - field.x;
+                fieldIndex.add(field);
             }
             else if (endPosition > position + 5 && "def:$".equals(text.substring(position + 1, position + 6)))
             {
@@ -247,6 +256,7 @@ public class HelloSignAnalyzer extends PDFTextStripper
             field = new HelloSignField();
             field.name = name;
             fields.put(name, field);
+            fieldIndex.add(field);
         }
         return field;
     }
@@ -257,6 +267,7 @@ public class HelloSignAnalyzer extends PDFTextStripper
     final PDDocument pdDocument;
     boolean analyzed = false;
     Map<String, HelloSignField> fields = null;
+    HelloSignFieldIndex fieldIndex = null;
     String formName = null;
     String lastFormName = null;
 }
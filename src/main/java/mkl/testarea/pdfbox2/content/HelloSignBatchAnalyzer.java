@@ -0,0 +1,152 @@
+package mkl.testarea.pdfbox2.content;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import mkl.testarea.pdfbox2.content.HelloSignAnalyzer.HelloSignField;
+import mkl.testarea.pdfbox2.io.DocumentLoader;
+
+/**
+ * <p>
+ * This class applies the {@link HelloSignAnalyzer} to many documents
+ * concurrently. Each document is loaded, analyzed, and closed in its own
+ * worker task; the field maps are handed to a {@link ResultHandler} in the
+ * calling thread in the order in which the analyses complete.
+ * </p>
+ *
+ * @author mkl
+ */
+public class HelloSignBatchAnalyzer
+{
+    /**
+     * Receives the analysis results. The methods are called sequentially
+     * in the thread calling {@link HelloSignBatchAnalyzer#analyze(Iterable, ResultHandler)}.
+     */
+    public interface ResultHandler
+    {
+        void analyzed(File file, Map<String, HelloSignField> fields) throws IOException;
+
+        /**
+         * Called if analyzing the given file failed. The default rethrows
+         * the exception which aborts the whole batch.
+         */
+        default void failed(File file, IOException exception) throws IOException
+        {
+            throw exception;
+        }
+    }
+
+    public HelloSignBatchAnalyzer()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public HelloSignBatchAnalyzer(int parallelism)
+    {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive.");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the {@link DocumentLoader} used to open the documents;
+     * by default {@link DocumentLoader#DEFAULT} is used.
+     */
+    public void setDocumentLoader(DocumentLoader documentLoader)
+    {
+        this.documentLoader = documentLoader != null ? documentLoader : DocumentLoader.DEFAULT;
+    }
+
+    public void analyze(Iterable<File> files, ResultHandler resultHandler) throws IOException
+    {
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+        try
+        {
+            CompletionService<Result> completionService = new ExecutorCompletionService<>(executorService);
+            int count = 0;
+            for (File file : files)
+            {
+                completionService.submit(() -> analyze(file));
+                count++;
+            }
+
+            for (int i = 0; i < count; i++)
+            {
+                Result result = take(completionService);
+                if (result.exception != null)
+                    resultHandler.failed(result.file, result.exception);
+                else
+                    resultHandler.analyzed(result.file, result.fields);
+            }
+        }
+        finally
+        {
+            executorService.shutdownNow();
+        }
+    }
+
+    //
+    // helper methods
+    //
+    Result analyze(File file)
+    {
+        Result result = new Result(file);
+        try (   PDDocument pdDocument = documentLoader.load(file)   )
+        {
+            result.fields = new HelloSignAnalyzer(pdDocument).analyze();
+        }
+        catch (IOException e)
+        {
+            result.exception = e;
+        }
+        return result;
+    }
+
+    static Result take(CompletionService<Result> completionService) throws IOException
+    {
+        try
+        {
+            return completionService.take().get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for HelloSign analysis.", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException("HelloSign analysis failed.", cause);
+        }
+    }
+
+    static class Result
+    {
+        Result(File file)
+        {
+            this.file = file;
+        }
+
+        final File file;
+        Map<String, HelloSignField> fields = null;
+        IOException exception = null;
+    }
+
+    //
+    // inner member variables
+    //
+    final int parallelism;
+    DocumentLoader documentLoader = DocumentLoader.DEFAULT;
+}
@@ -0,0 +1,68 @@
+package mkl.testarea.pdfbox2.content;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import mkl.testarea.pdfbox2.content.HelloSignAnalyzer.HelloSignField;
+
+/**
+ * <p>
+ * This class indexes {@link HelloSignField} instances by their y coordinate.
+ * It allows retrieving the candidate fields for a glyph at a given y
+ * coordinate in logarithmic time instead of checking every field.
+ * </p>
+ * <p>
+ * As the field coordinates are used as keys, a field must be removed
+ * before and re-added after changing its position.
+ * </p>
+ * 
+ * @author mkl
+ */
+class HelloSignFieldIndex
+{
+    /**
+     * The query range around a y coordinate; a bit larger than the
+     * tolerance of {@link HelloSignField#inField(float, float)} to
+     * be on the safe side concerning float rounding.
+     */
+    final static float Y_TOLERANCE = 4;
+
+    void add(HelloSignField field)
+    {
+        fieldsByY.computeIfAbsent(field.y, y -> new ArrayList<>(1)).add(field);
+    }
+
+    void remove(HelloSignField field)
+    {
+        List<HelloSignField> fields = fieldsByY.get(field.y);
+        if (fields != null)
+        {
+            fields.remove(field);
+            if (fields.isEmpty())
+                fieldsByY.remove(field.y);
+        }
+    }
+
+    /**
+     * Returns the fields which might contain a glyph at the given y coordinate.
+     * Callers still have to check {@link HelloSignField#inField(float, float)}.
+     */
+    Collection<HelloSignField> candidates(float y)
+    {
+        NavigableMap<Float, List<HelloSignField>> range = fieldsByY.subMap(y - Y_TOLERANCE, true, y + Y_TOLERANCE, true);
+        if (range.isEmpty())
+            return Collections.emptyList();
+        if (range.size() == 1)
+            return range.firstEntry().getValue();
+        List<HelloSignField> result = new ArrayList<>();
+        for (List<HelloSignField> fields : range.values())
+            result.addAll(fields);
+        return result;
+    }
+
+    final TreeMap<Float, List<HelloSignField>> fieldsByY = new TreeMap<>();
+}
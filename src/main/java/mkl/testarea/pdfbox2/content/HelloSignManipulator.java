@@ -1,10 +1,13 @@
 package mkl.testarea.pdfbox2.content;
 
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -12,9 +15,16 @@ import org.apache.pdfbox.contentstream.operator.MissingOperandException;
 import org.apache.pdfbox.contentstream.operator.Operator;
 import org.apache.pdfbox.contentstream.operator.OperatorProcessor;
 import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
 import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSString;
 import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.graphics.PDXObject;
 import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.pdmodel.graphics.form.PDTransparencyGroup;
@@ -70,6 +80,257 @@ public class HelloSignManipulator extends PDFTextStripper
         }
     }
 
+    /**
+     * <p>
+     * This method clears the given fields and fills in the given new values
+     * (if not <code>null</code>) in a single content stream traversal.
+     * </p>
+     * <p>
+     * In contrast to {@link #clearFields(Iterable)}, which requires an analysis
+     * pass and a rewriting pass (and filling would require yet another pass), this
+     * method records the operations of the form XObject to edit while analyzing
+     * and rewrites the form from that recording after the analysis. A new value
+     * replaces the first text showing instruction of the old value and so uses its
+     * font, size, color, and position; for fields without old value text it is
+     * drawn at the field position in the last font used in the form XObject. In
+     * either case the font must be able to encode the new value.
+     * </p>
+     */
+    public void clearAndFillFields(Map<String, String> values) throws IOException
+    {
+        PDDocument pdDocument = helloSignAnalyzer.pdDocument;
+        RecordingAnalyzer recordingAnalyzer = new RecordingAnalyzer(pdDocument);
+        Map<String, HelloSignField> fieldMap = recordingAnalyzer.analyze();
+        String formName = recordingAnalyzer.getLastFormName();
+        List<RecordedOperation> operations = formName != null ? recordingAnalyzer.recordings.get(formName) : null;
+        if (operations == null)
+        {
+            throw new IllegalArgumentException("No form xobject to edit found.");
+        }
+        Matrix formMatrix = recordingAnalyzer.formMatrices.get(formName);
+        if (formMatrix == null)
+            formMatrix = new Matrix();
+
+        List<HelloSignField> selectedFields = new ArrayList<>();
+        for (String fieldName : values.keySet())
+        {
+            HelloSignField field = fieldMap.get(fieldName);
+            if (field == null)
+            {
+                throw new IllegalArgumentException("Unknown HelloSign field " + fieldName);
+            }
+            selectedFields.add(field);
+        }
+
+        Map<RecordedOperation, HelloSignField> clearedOperations = new HashMap<>();
+        Map<HelloSignField, RecordedOperation> firstOperations = new HashMap<>();
+        RecordedOperation lastTextOperation = null;
+        for (RecordedOperation operation : operations)
+        {
+            if (!operation.textShowing)
+                continue;
+            lastTextOperation = operation;
+            for (HelloSignField field : selectedFields)
+            {
+                if (field.inField(operation.x, operation.y))
+                {
+                    clearedOperations.put(operation, field);
+                    firstOperations.putIfAbsent(field, operation);
+                    break;
+                }
+            }
+        }
+
+        PDPage page = pdDocument.getPage(pdDocument.getNumberOfPages() - 1);
+        PDResources resources = page.getResources();
+        COSName name = COSName.getPDFName(formName);
+        if (resources.isImageXObject(name))
+        {
+            throw new IllegalArgumentException("The form xobject to edit turned out to be an image.");
+        }
+        PDXObject xobject = resources.getXObject(name);
+        if (xobject instanceof PDTransparencyGroup)
+        {
+            throw new IllegalArgumentException("The form xobject to edit turned out to be a transparency group.");
+        }
+        else if (!(xobject instanceof PDFormXObject))
+        {
+            throw new IllegalArgumentException("The form xobject to edit could not be found.");
+        }
+
+        PDFormXObject form = (PDFormXObject) xobject;
+        PDFormXObject formReplacement = new PDFormXObject(pdDocument);
+        formReplacement.setBBox(form.getBBox());
+        formReplacement.setFormType(form.getFormType());
+        formReplacement.setMatrix(form.getMatrix().createAffineTransform());
+        formReplacement.setResources(form.getResources());
+        try (   OutputStream outputStream = formReplacement.getContentStream().createOutputStream(COSName.FLATE_DECODE)   )
+        {
+            ContentStreamWriter writer = new ContentStreamWriter(outputStream);
+
+            for (HelloSignField field : selectedFields)
+            {
+                String value = values.get(field.getName());
+                if (value == null || value.length() == 0 || firstOperations.containsKey(field))
+                    continue;
+                if (lastTextOperation == null || lastTextOperation.fontName == null)
+                {
+                    throw new IllegalArgumentException("No font to fill in field " + field.getName());
+                }
+                writeFieldValue(writer, field, value, lastTextOperation, formMatrix);
+            }
+
+            for (RecordedOperation operation : operations)
+            {
+                HelloSignField field = clearedOperations.get(operation);
+                if (field == null)
+                {
+                    writer.writeTokens(operation.operands);
+                    writer.writeToken(operation.operator);
+                }
+                else if (firstOperations.get(field) == operation)
+                {
+                    String value = values.get(field.getName());
+                    if (value != null && value.length() > 0)
+                    {
+                        if (operation.font == null)
+                        {
+                            throw new IllegalArgumentException("No font to fill in field " + field.getName());
+                        }
+                        writer.writeTokens(new COSString(operation.font.encode(value)));
+                        writer.writeToken(Operator.getOperator("Tj"));
+                    }
+                }
+            }
+        }
+        resources.put(name, formReplacement);
+    }
+
+    void writeFieldValue(ContentStreamWriter writer, HelloSignField field, String value, RecordedOperation fontOperation, Matrix formMatrix) throws IOException
+    {
+        Point2D position = new Point2D.Float(field.getX(), field.getY());
+        try
+        {
+            formMatrix.createAffineTransform().createInverse().transform(position, position);
+        }
+        catch (NoninvertibleTransformException e)
+        {
+            throw new IOException("The form xobject transformation is not invertible.", e);
+        }
+        writer.writeToken(Operator.getOperator("q"));
+        writer.writeToken(Operator.getOperator("BT"));
+        writer.writeTokens(fontOperation.fontName, new COSFloat(fontOperation.fontSize));
+        writer.writeToken(Operator.getOperator("Tf"));
+        writer.writeTokens(COSInteger.ONE, COSInteger.ZERO, COSInteger.ZERO, COSInteger.ONE,
+                new COSFloat((float) position.getX()), new COSFloat((float) position.getY()));
+        writer.writeToken(Operator.getOperator("Tm"));
+        writer.writeTokens(new COSString(fontOperation.font.encode(value)));
+        writer.writeToken(Operator.getOperator("Tj"));
+        writer.writeToken(Operator.getOperator("ET"));
+        writer.writeToken(Operator.getOperator("Q"));
+    }
+
+    /**
+     * A content stream operation of the form XObject to edit, recorded by
+     * the {@link RecordingAnalyzer}.
+     */
+    static class RecordedOperation
+    {
+        RecordedOperation(Operator operator, List<COSBase> operands)
+        {
+            this.operator = operator;
+            this.operands = operands;
+        }
+
+        final Operator operator;
+        final List<COSBase> operands;
+        boolean textShowing = false;
+        float x = 0, y = 0;
+        PDFont font = null;
+        COSName fontName = null;
+        float fontSize = 0;
+    }
+
+    /**
+     * This {@link HelloSignAnalyzer} additionally records the operations
+     * of the form XObjects drawn directly by the page content, and for
+     * the text showing ones also the position and font.
+     */
+    class RecordingAnalyzer extends HelloSignAnalyzer
+    {
+        RecordingAnalyzer(PDDocument pdDocument) throws IOException
+        {
+            super(pdDocument);
+        }
+
+        @Override
+        protected void processOperator(Operator operator, List<COSBase> operands) throws IOException
+        {
+            String operatorName = operator != null ? operator.getName() : null;
+            boolean isDo = "Do".equals(operatorName);
+            boolean record = formDepth == 1 && !inRecordedOperator && recording != null;
+            if (record)
+            {
+                RecordedOperation operation = new RecordedOperation(operator, operands);
+                if (recording.isEmpty())
+                {
+                    formMatrices.put(recordingName, getGraphicsState().getCurrentTransformationMatrix().clone());
+                }
+                if ("Tf".equals(operatorName) && operands != null && operands.size() >= 2
+                        && operands.get(0) instanceof COSName && operands.get(1) instanceof COSNumber)
+                {
+                    currentFontName = (COSName) operands.get(0);
+                    currentFontSize = ((COSNumber) operands.get(1)).floatValue();
+                }
+                else if (operatorName != null && TjTJ.contains(operatorName))
+                {
+                    Matrix transformation = getTextMatrix().multiply(getGraphicsState().getCurrentTransformationMatrix());
+                    operation.textShowing = true;
+                    operation.x = transformation.getTranslateX();
+                    operation.y = transformation.getTranslateY();
+                    operation.font = getGraphicsState().getTextState().getFont();
+                    operation.fontName = currentFontName;
+                    operation.fontSize = currentFontSize;
+                }
+                recording.add(operation);
+            }
+            else if (isDo && formDepth == 0 && operands != null && operands.size() > 0 && operands.get(0) instanceof COSName)
+            {
+                recording = new ArrayList<>();
+                recordingName = ((COSName) operands.get(0)).getName();
+                recordings.put(recordingName, recording);
+                formMatrices.remove(recordingName);
+                currentFontName = null;
+                currentFontSize = 0;
+            }
+
+            if (isDo)
+                formDepth++;
+            if (record)
+                inRecordedOperator = true;
+            try
+            {
+                super.processOperator(operator, operands);
+            }
+            finally
+            {
+                if (record)
+                    inRecordedOperator = false;
+                if (isDo)
+                    formDepth--;
+            }
+        }
+
+        final Map<String, List<RecordedOperation>> recordings = new HashMap<>();
+        final Map<String, Matrix> formMatrices = new HashMap<>();
+        List<RecordedOperation> recording = null;
+        String recordingName = null;
+        int formDepth = 0;
+        boolean inRecordedOperator = false;
+        COSName currentFontName = null;
+        float currentFontSize = 0;
+    }
+
     class SelectiveDrawObject extends OperatorProcessor
     {
         @Override
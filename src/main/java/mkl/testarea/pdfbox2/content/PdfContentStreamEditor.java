@@ -1,14 +1,22 @@
 package mkl.testarea.pdfbox2.content;
 
 import java.awt.geom.Point2D;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
 import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSArray;
 import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -112,26 +120,155 @@ public class PdfContentStreamEditor extends PDFGraphicsStreamEngine {
     // Actual editing methods
     @Override
     public void processPage(PDPage page) throws IOException {
-        PDStream stream = new PDStream(document);
-        replacement = new ContentStreamWriter(replacementStream = stream.createOutputStream(COSName.FLATE_DECODE));
-        super.processPage(page);
-        replacementStream.close();
-        page.setContents(stream);
-        replacement = null;
-        replacementStream = null;
+        PDStream stream = detached ? new PDStream(new COSStream()) : new PDStream(document);
+        ContentStreamEncoding encoding = outputEncoding != null ? outputEncoding : ContentStreamEncoding.DEFAULT;
+        try (OutputStream outputStream = encoding.createOutputStream(stream.getCOSObject(), getOriginalContentStream(page))) {
+            replacementStream = outputStream;
+            replacement = new ContentStreamWriter(outputStream);
+            super.processPage(page);
+        } finally {
+            replacement = null;
+            replacementStream = null;
+        }
+        if (detached)
+            detachedResult = stream;
+        else
+            page.setContents(stream);
+    }
+
+    /**
+     * <p>
+     * This method processes the given page like {@link #processPage(PDPage)}
+     * but returns the edited content stream instead of replacing the page
+     * contents. The returned stream is not backed by the document scratch
+     * file.
+     * </p>
+     * <p>
+     * This allows editing pages without creating new objects in the document,
+     * e.g. in {@link PdfContentStreamEditorDriver} worker threads.
+     * </p>
+     */
+    public PDStream processPageDetached(PDPage page) throws IOException {
+        detached = true;
+        try {
+            processPage(page);
+            return detachedResult;
+        } finally {
+            detached = false;
+            detachedResult = null;
+        }
     }
 
+    /**
+     * <p>
+     * This method edits the content stream of the given form XObject in place.
+     * </p>
+     * <p>
+     * If a {@link FormXObjectCache} has been set, a form XObject already edited
+     * by an editor with the same {@link #getConfigurationKey()} is not edited
+     * again. Thus, a form XObject used on many pages, e.g. a letterhead, is only
+     * rewritten once if the editors for those pages share the cache and a key.
+     * </p>
+     */
     public void processFormXObject(PDFormXObject formXObject, PDPage page) throws IOException {
-        PDStream stream = new PDStream(document);
-        replacement = new ContentStreamWriter(replacementStream = stream.createOutputStream(COSName.FLATE_DECODE));
-        super.processChildStream(formXObject, page);
-        replacementStream.close();
-        try (OutputStream outputStream = formXObject.getCOSObject().createOutputStream()) {
-            stream.createInputStream().transferTo(outputStream);
+        COSStream formStream = formXObject.getCOSObject();
+        Object configurationKey = formXObjectCache != null ? getConfigurationKey() : null;
+        if (formXObjectCache != null && formXObjectCache.isRewritten(formStream, configurationKey))
+            return;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        replacementStream = bytes;
+        replacement = new ContentStreamWriter(bytes);
+        try {
+            super.processChildStream(formXObject, page);
         } finally {
             replacement = null;
             replacementStream = null;
         }
+        ContentStreamEncoding encoding = outputEncoding != null ? outputEncoding : ContentStreamEncoding.ORIGINAL;
+        try (OutputStream outputStream = encoding.createOutputStream(formStream, formStream)) {
+            bytes.writeTo(outputStream);
+        }
+        if (formXObjectCache != null)
+            formXObjectCache.setRewritten(formStream, configurationKey);
+    }
+
+    /**
+     * Sets the strategy to encode the edited content streams. If none is set,
+     * page content streams are Flate encoded at the default level and form
+     * XObject streams keep their original filters.
+     */
+    public void setOutputEncoding(ContentStreamEncoding outputEncoding) {
+        this.outputEncoding = outputEncoding;
+    }
+
+    /**
+     * Returns the (first) original content stream of the given page, or
+     * <code>null</code> if there is none.
+     */
+    static COSStream getOriginalContentStream(PDPage page) {
+        COSBase contents = page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+        if (contents instanceof COSArray && ((COSArray) contents).size() > 0)
+            contents = ((COSArray) contents).getObject(0);
+        return contents instanceof COSStream ? (COSStream) contents : null;
+    }
+
+    /**
+     * Sets the cache of already edited form XObjects to use in
+     * {@link #processFormXObject(PDFormXObject, PDPage)}. Share a
+     * cache instance between the editors of the pages of a document.
+     */
+    public void setFormXObjectCache(FormXObjectCache formXObjectCache) {
+        this.formXObjectCache = formXObjectCache;
+    }
+
+    /**
+     * <p>
+     * This method returns a key identifying the editing configuration for
+     * the {@link FormXObjectCache}. Editors returning equal keys are assumed
+     * to apply identical changes. The default returns the editor instance
+     * itself, so a form XObject is never skipped because a differently
+     * configured editor already has rewritten it; this also means that by
+     * default editors do not profit from a shared cache.
+     * </p>
+     * <p>
+     * Override this method to share rewritten form XObjects between editor
+     * instances, returning a value derived from everything that determines
+     * the changes applied, e.g. the editor class and its settings.
+     * </p>
+     */
+    protected Object getConfigurationKey() {
+        return this;
+    }
+
+    /**
+     * <p>
+     * This class remembers which form XObject streams already have been
+     * rewritten with which editor configuration. Streams are compared by
+     * identity, configuration keys by equality.
+     * </p>
+     * <p>
+     * Use one instance per document; instances may be shared between threads.
+     * </p>
+     */
+    public static class FormXObjectCache {
+        public synchronized boolean isRewritten(COSStream stream, Object configurationKey) {
+            Set<COSStream> streams = rewritten.get(configurationKey);
+            return streams != null && streams.contains(stream);
+        }
+
+        public synchronized void setRewritten(COSStream stream, Object configurationKey) {
+            rewritten.computeIfAbsent(configurationKey, key -> Collections.newSetFromMap(new IdentityHashMap<>())).add(stream);
+        }
+
+        public synchronized int size() {
+            int size = 0;
+            for (Set<COSStream> streams : rewritten.values())
+                size += streams.size();
+            return size;
+        }
+
+        final Map<Object, Set<COSStream>> rewritten = new HashMap<>();
     }
 
     // PDFStreamEngine overrides to allow editing
@@ -158,4 +295,8 @@ public class PdfContentStreamEditor extends PDFGraphicsStreamEngine {
     OutputStream replacementStream = null;
     ContentStreamWriter replacement = null;
     boolean inOperator = false;
+    FormXObjectCache formXObjectCache = null;
+    ContentStreamEncoding outputEncoding = null;
+    boolean detached = false;
+    PDStream detachedResult = null;
 }
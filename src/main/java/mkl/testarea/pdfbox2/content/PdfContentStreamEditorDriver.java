@@ -0,0 +1,368 @@
+package mkl.testarea.pdfbox2.content;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.DefaultResourceCache;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.ResourceCache;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDPropertyList;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.pattern.PDAbstractPattern;
+import org.apache.pdfbox.pdmodel.graphics.pattern.PDTilingPattern;
+import org.apache.pdfbox.pdmodel.graphics.shading.PDShading;
+import org.apache.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
+
+/**
+ * <p>
+ * This class drives {@link PdfContentStreamEditor} instances over many pages
+ * of a document concurrently. Each page is edited by its own editor instance
+ * created by the given {@link EditorFactory} in a worker thread; the edited
+ * content is encoded into a stream not backed by the document there, too.
+ * Only attaching the resulting {@link PDStream}s to the pages happens
+ * sequentially in the calling thread.
+ * </p>
+ * <p>
+ * Beware, PDFBox 2 does not claim thread safety for a {@link PDDocument}, and
+ * reading the same stream from multiple threads at once is not safe. Thus,
+ * before editing, this driver resolves the resources of each page, recursively
+ * into form XObjects, tiling patterns, and Type 3 fonts, in the calling thread
+ * through a synchronized resource cache which the pages edited by the workers
+ * use, too; font programs and ICC profiles, therefore, are read only there.
+ * Pages using streams read while editing (content streams, form XObjects,
+ * tiling patterns, Type 3 glyph procedures) or directly embedded, uncached
+ * resources together with another page are edited sequentially in the calling
+ * thread. So no stream is read by two threads at once, and the workers only
+ * concurrently read dictionaries and cached resource objects.
+ * </p>
+ * <p>
+ * This does not cover changes: editors must not change shared objects (e.g.
+ * shared resources) in their hooks.
+ * </p>
+ *
+ * @author mkl
+ */
+public class PdfContentStreamEditorDriver {
+    /**
+     * Creates the editor to use for a given page. As the editor instances
+     * are used in different threads, they must not share mutable state.
+     */
+    public interface EditorFactory {
+        PdfContentStreamEditor create(PDDocument document, PDPage page) throws IOException;
+    }
+
+    public PdfContentStreamEditorDriver(PDDocument document, EditorFactory editorFactory) {
+        this(document, editorFactory, Runtime.getRuntime().availableProcessors());
+    }
+
+    public PdfContentStreamEditorDriver(PDDocument document, EditorFactory editorFactory, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive.");
+        this.document = document;
+        this.editorFactory = editorFactory;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Edits all pages of the document.
+     */
+    public void processPages() throws IOException {
+        processPages(document.getPages());
+    }
+
+    /**
+     * Edits the given pages of the document.
+     */
+    public void processPages(Iterable<PDPage> pages) throws IOException {
+        ResourceCache resourceCache = document.getResourceCache();
+        SynchronizedResourceCache synchronizedCache = new SynchronizedResourceCache(resourceCache != null ? resourceCache : new DefaultResourceCache());
+
+        // the given pages carry the cache the document had when they were created,
+        // so the pages to edit are re-created on the same dictionaries with the
+        // synchronized cache
+        List<PDPage> pageList = new ArrayList<>();
+        List<PDPage> workerPages = new ArrayList<>();
+        List<Set<COSBase>> readObjectsList = new ArrayList<>();
+        Map<COSBase, Integer> usages = new IdentityHashMap<>();
+        for (PDPage page : pages) {
+            PDPage workerPage = new PDPage(page.getCOSObject(), synchronizedCache);
+            Set<COSBase> readObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+            prepare(workerPage, readObjects, synchronizedCache);
+            for (COSBase readObject : readObjects)
+                usages.merge(readObject, 1, Integer::sum);
+            pageList.add(page);
+            workerPages.add(workerPage);
+            readObjectsList.add(readObjects);
+        }
+        if (pageList.isEmpty())
+            return;
+
+        List<PDStream> contents = new ArrayList<>(Collections.nCopies(pageList.size(), null));
+        List<Future<PDStream>> futures = new ArrayList<>(Collections.nCopies(pageList.size(), null));
+        List<Integer> sequentialIndices = new ArrayList<>();
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(parallelism, pageList.size()));
+        try {
+            for (int i = 0; i < pageList.size(); i++) {
+                if (isShared(readObjectsList.get(i), usages)) {
+                    sequentialIndices.add(i);
+                } else {
+                    PDPage workerPage = workerPages.get(i);
+                    futures.set(i, executorService.submit(() -> editPage(workerPage)));
+                }
+            }
+            for (int i : sequentialIndices)
+                contents.set(i, editPage(workerPages.get(i)));
+            for (int i = 0; i < pageList.size(); i++) {
+                if (futures.get(i) != null)
+                    contents.set(i, retrieve(futures.get(i)));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        for (int i = 0; i < pageList.size(); i++)
+            attach(pageList.get(i), contents.get(i));
+    }
+
+    /**
+     * Edits the given page in the current thread and returns the
+     * edited content, encoded as configured for the editor, in a stream
+     * not backed by the document scratch file.
+     */
+    PDStream editPage(PDPage page) throws IOException {
+        PdfContentStreamEditor editor = editorFactory.create(document, page);
+        return editor.processPageDetached(page);
+    }
+
+    /**
+     * Attaches the given edited content as new content stream to the page.
+     * This method must only be called sequentially.
+     */
+    void attach(PDPage page, PDStream content) {
+        page.setContents(content);
+    }
+
+    /**
+     * Resolves the resources of the given page through the given cache, pinning
+     * them there for the run, and collects the objects whose streams are read
+     * while editing the page.
+     */
+    static void prepare(PDPage page, Set<COSBase> readObjects, SynchronizedResourceCache resourceCache) throws IOException {
+        COSBase contents = page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+        if (contents instanceof COSStream) {
+            readObjects.add(contents);
+        } else if (contents instanceof COSArray) {
+            for (COSBase content : (COSArray) contents) {
+                if (content instanceof COSObject)
+                    content = ((COSObject) content).getObject();
+                if (content instanceof COSStream)
+                    readObjects.add(content);
+            }
+        }
+        prepare(page.getResources(), readObjects, resourceCache);
+    }
+
+    /**
+     * Resolves the given resources through the given cache, pinning them there
+     * for the run, and collects the objects whose streams are read while editing
+     * content using them. Direct resources are not cached but re-created on each
+     * lookup, so they are collected, too.
+     */
+    static void prepare(PDResources resources, Set<COSBase> readObjects, SynchronizedResourceCache resourceCache) throws IOException {
+        if (resources == null)
+            return;
+        for (COSName type : RESOURCE_TYPES) {
+            COSBase typeResources = resources.getCOSObject().getDictionaryObject(type);
+            if (!(typeResources instanceof COSDictionary))
+                continue;
+            for (COSName name : ((COSDictionary) typeResources).keySet()) {
+                COSBase item = ((COSDictionary) typeResources).getItem(name);
+                if (!(item instanceof COSObject)) {
+                    if (item instanceof COSDictionary || item instanceof COSArray)
+                        readObjects.add(item);
+                    continue;
+                }
+                Object resource = resolve(resources, type, name);
+                if (resource == null)
+                    continue;
+                resourceCache.pin(resource);
+                if (resource instanceof PDFormXObject) {
+                    PDFormXObject form = (PDFormXObject) resource;
+                    if (readObjects.add(form.getCOSObject()))
+                        prepare(form.getResources(), readObjects, resourceCache);
+                } else if (resource instanceof PDTilingPattern) {
+                    PDTilingPattern pattern = (PDTilingPattern) resource;
+                    if (readObjects.add(pattern.getCOSObject()))
+                        prepare(pattern.getResources(), readObjects, resourceCache);
+                } else if (resource instanceof PDType3Font) {
+                    PDType3Font font = (PDType3Font) resource;
+                    if (readObjects.add(font.getCOSObject()))
+                        prepare(font.getResources(), readObjects, resourceCache);
+                }
+            }
+        }
+    }
+
+    static Object resolve(PDResources resources, COSName type, COSName name) throws IOException {
+        if (COSName.FONT.equals(type))
+            return resources.getFont(name);
+        if (COSName.COLORSPACE.equals(type))
+            return resources.getColorSpace(name);
+        if (COSName.EXT_G_STATE.equals(type))
+            return resources.getExtGState(name);
+        if (COSName.SHADING.equals(type))
+            return resources.getShading(name);
+        if (COSName.PATTERN.equals(type))
+            return resources.getPattern(name);
+        if (COSName.PROPERTIES.equals(type))
+            return resources.getProperties(name);
+        return resources.getXObject(name);
+    }
+
+    /**
+     * A page can be edited concurrently only if no object whose stream is read
+     * while editing it is used by another page, too.
+     */
+    static boolean isShared(Set<COSBase> readObjects, Map<COSBase, Integer> usages) {
+        for (COSBase readObject : readObjects) {
+            if (usages.get(readObject) > 1)
+                return true;
+        }
+        return false;
+    }
+
+    static <T> T retrieve(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for page editing.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException("Page editing failed.", cause);
+        }
+    }
+
+    /**
+     * A {@link ResourceCache} wrapper serializing all access to the wrapped cache.
+     * Pinned resources are strongly referenced so that a cache holding soft
+     * references does not drop them during a run.
+     */
+    static class SynchronizedResourceCache implements ResourceCache {
+        SynchronizedResourceCache(ResourceCache resourceCache) {
+            this.resourceCache = resourceCache;
+        }
+
+        @Override
+        public synchronized PDFont getFont(COSObject indirect) throws IOException {
+            return resourceCache.getFont(indirect);
+        }
+
+        @Override
+        public synchronized PDColorSpace getColorSpace(COSObject indirect) throws IOException {
+            return resourceCache.getColorSpace(indirect);
+        }
+
+        @Override
+        public synchronized PDExtendedGraphicsState getExtGState(COSObject indirect) {
+            return resourceCache.getExtGState(indirect);
+        }
+
+        @Override
+        public synchronized PDShading getShading(COSObject indirect) throws IOException {
+            return resourceCache.getShading(indirect);
+        }
+
+        @Override
+        public synchronized PDAbstractPattern getPattern(COSObject indirect) throws IOException {
+            return resourceCache.getPattern(indirect);
+        }
+
+        @Override
+        public synchronized PDPropertyList getProperties(COSObject indirect) {
+            return resourceCache.getProperties(indirect);
+        }
+
+        @Override
+        public synchronized PDXObject getXObject(COSObject indirect) throws IOException {
+            return resourceCache.getXObject(indirect);
+        }
+
+        @Override
+        public synchronized void put(COSObject indirect, PDFont font) throws IOException {
+            resourceCache.put(indirect, font);
+        }
+
+        @Override
+        public synchronized void put(COSObject indirect, PDColorSpace colorSpace) throws IOException {
+            resourceCache.put(indirect, colorSpace);
+        }
+
+        @Override
+        public synchronized void put(COSObject indirect, PDExtendedGraphicsState extGState) {
+            resourceCache.put(indirect, extGState);
+        }
+
+        @Override
+        public synchronized void put(COSObject indirect, PDShading shading) throws IOException {
+            resourceCache.put(indirect, shading);
+        }
+
+        @Override
+        public synchronized void put(COSObject indirect, PDAbstractPattern pattern) throws IOException {
+            resourceCache.put(indirect, pattern);
+        }
+
+        @Override
+        public synchronized void put(COSObject indirect, PDPropertyList propertyList) {
+            resourceCache.put(indirect, propertyList);
+        }
+
+        @Override
+        public synchronized void put(COSObject indirect, PDXObject xobject) throws IOException {
+            resourceCache.put(indirect, xobject);
+        }
+
+        synchronized void pin(Object resource) {
+            pinned.add(resource);
+        }
+
+        final ResourceCache resourceCache;
+        final List<Object> pinned = new ArrayList<>();
+    }
+
+    static final COSName[] RESOURCE_TYPES = {COSName.FONT, COSName.COLORSPACE, COSName.EXT_G_STATE,
+            COSName.SHADING, COSName.PATTERN, COSName.PROPERTIES, COSName.XOBJECT};
+
+    final PDDocument document;
+    final EditorFactory editorFactory;
+    final int parallelism;
+}
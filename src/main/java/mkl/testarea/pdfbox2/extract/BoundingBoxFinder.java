@@ -7,9 +7,12 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 
 import org.apache.fontbox.util.BoundingBox;
 import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
@@ -25,6 +28,8 @@ import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
 import org.apache.pdfbox.util.Matrix;
 import org.apache.pdfbox.util.Vector;
 
+import mkl.testarea.pdfbox2.analyze.OperatorInstrumentation;
+
 /**
  * <a href="https://stackoverflow.com/questions/52821421/how-do-determine-location-of-actual-pdf-content-with-pdfbox">
  * How do determine location of actual PDF content with PDFBox?
@@ -49,6 +54,22 @@ public class BoundingBoxFinder extends PDFGraphicsStreamEngine {
         return rectangle;
     }
 
+    /**
+     * Sets an {@link OperatorInstrumentation} recording per operator figures;
+     * <code>null</code> (the default) switches instrumentation off.
+     */
+    public void setInstrumentation(OperatorInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    @Override
+    protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+        if (instrumentation != null)
+            instrumentation.process(operator, operands, super::processOperator);
+        else
+            super.processOperator(operator, operands);
+    }
+
     //
     // Text
     //
@@ -254,4 +275,5 @@ public class BoundingBoxFinder extends PDFGraphicsStreamEngine {
 
     Rectangle2D rectanglePath = null;
     Rectangle2D rectangle = null;
+    OperatorInstrumentation instrumentation = null;
 }
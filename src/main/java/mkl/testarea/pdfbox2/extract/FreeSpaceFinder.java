@@ -10,9 +10,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 import org.apache.fontbox.util.BoundingBox;
 import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
@@ -28,6 +31,8 @@ import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
 import org.apache.pdfbox.util.Matrix;
 import org.apache.pdfbox.util.Vector;
 
+import mkl.testarea.pdfbox2.analyze.OperatorInstrumentation;
+
 /**
  * <a href="https://stackoverflow.com/questions/72086776/find-blank-spacerectangle-for-signature-field-using-pdfbox">
  * Find blank space(rectangle) for signature field using PDFBox
@@ -70,6 +75,22 @@ public class FreeSpaceFinder extends PDFGraphicsStreamEngine {
         return freeSpaces;
     }
 
+    /**
+     * Sets an {@link OperatorInstrumentation} recording per operator figures;
+     * <code>null</code> (the default) switches instrumentation off.
+     */
+    public void setInstrumentation(OperatorInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    @Override
+    protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+        if (instrumentation != null)
+            instrumentation.process(operator, operands, super::processOperator);
+        else
+            super.processOperator(operator, operands);
+    }
+
     //
     // Text
     //
@@ -310,4 +331,5 @@ public class FreeSpaceFinder extends PDFGraphicsStreamEngine {
     Collection<Rectangle2D> freeSpaces = null;
     final float minWidth;
     final float minHeight;
+    OperatorInstrumentation instrumentation = null;
 }
@@ -22,6 +22,8 @@ import org.apache.pdfbox.text.TextPosition;
 import org.apache.pdfbox.util.Matrix;
 import org.apache.pdfbox.util.Vector;
 
+import mkl.testarea.pdfbox2.analyze.OperatorInstrumentation;
+
 /**
  * <a href="https://stackoverflow.com/questions/47358127/remove-invisible-text-from-pdf-using-pdfbox">
  * remove invisible text from pdf using pdfbox
@@ -46,6 +48,7 @@ public class PDFVisibleTextStripper extends PDFTextStripper {
     private boolean checkEndPointToo = false;
     private boolean useFatGlyphOrigin = false;
     private PrintStream dropStream = null;
+    private OperatorInstrumentation instrumentation = null;
 
     public PDFVisibleTextStripper() throws IOException {
         this(false);
@@ -86,6 +89,22 @@ public class PDFVisibleTextStripper extends PDFTextStripper {
         this.useFatGlyphOrigin = useFatGlyphOrigin;
     }
 
+    /**
+     * Sets an {@link OperatorInstrumentation} recording per operator figures;
+     * <code>null</code> (the default) switches instrumentation off.
+     */
+    public void setInstrumentation(OperatorInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    @Override
+    protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+        if (instrumentation != null)
+            instrumentation.process(operator, operands, super::processOperator);
+        else
+            super.processOperator(operator, operands);
+    }
+
     float lowerLeftX = 0;
     float lowerLeftY = 0;
 
@@ -10,6 +10,8 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
@@ -19,6 +21,8 @@ import org.apache.pdfbox.text.PDFTextStripperByArea;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import mkl.testarea.pdfbox2.analyze.OperatorInstrumentation;
+
 /**
  * <a href="https://stackoverflow.com/questions/51380677/extracting-text-from-pdf-java-using-pdfbox-library-from-a-tables-rows-with-di">
  * Extracting text from pdf (java using pdfbox library) from a table's rows with different heights
@@ -60,6 +64,22 @@ public class PdfBoxFinder extends PDFGraphicsStreamEngine {
         super(page);
     }
 
+    /**
+     * Sets an {@link OperatorInstrumentation} recording per operator figures;
+     * <code>null</code> (the default) switches instrumentation off.
+     */
+    public void setInstrumentation(OperatorInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    @Override
+    protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+        if (instrumentation != null)
+            instrumentation.process(operator, operands, super::processOperator);
+        else
+            super.processOperator(operator, operands);
+    }
+
     /**
      * The boxes ({@link Rectangle2D} instances with coordinates according to
      * the PDF coordinate system, e.g. for decorating the table cells) the
@@ -310,4 +330,5 @@ public class PdfBoxFinder extends PDFGraphicsStreamEngine {
     final List<Interval> horizontalLines = new ArrayList<>();
     final List<Interval> verticalLines = new ArrayList<>();
     final Logger logger = LoggerFactory.getLogger(PdfBoxFinder.class);
+    OperatorInstrumentation instrumentation = null;
 }
@@ -7,10 +7,14 @@ import java.util.Collections;
 import java.util.List;
 
 import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
 
+import mkl.testarea.pdfbox2.analyze.OperatorInstrumentation;
+
 /**
  * <a href="https://stackoverflow.com/questions/64093610/extract-checkbox-value-out-of-pdf-1-7-using-pdfbox">
  * Extract Checkbox value out of PDF 1.7 using PDFBox
@@ -58,6 +62,22 @@ public class PdfCheckBoxFinder extends PDFGraphicsStreamEngine {
             pathAnchorsByType[i] = new ArrayList<Point2D>();
     }
 
+    /**
+     * Sets an {@link OperatorInstrumentation} recording per operator figures;
+     * <code>null</code> (the default) switches instrumentation off.
+     */
+    public void setInstrumentation(OperatorInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    @Override
+    protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+        if (instrumentation != null)
+            instrumentation.process(operator, operands, super::processOperator);
+        else
+            super.processOperator(operator, operands);
+    }
+
     public List<CheckBox> getBoxes() {
         if (checkBoxes.isEmpty()) {
             for (Point2D anchor : pathAnchorsByType[PathType.boxBottom.index]) {
@@ -273,4 +293,5 @@ public class PdfCheckBoxFinder extends PDFGraphicsStreamEngine {
     final List<Point2D>[] pathAnchorsByType = new List[PathType.values().length];
 
     final List<CheckBox> checkBoxes = new ArrayList<>(); 
+    OperatorInstrumentation instrumentation = null;
 }
@@ -0,0 +1,347 @@
+package mkl.testarea.pdfbox2.form;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.multipdf.PDFCloneUtility;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDNonTerminalField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDPushButton;
+
+import mkl.testarea.pdfbox2.io.DocumentLoader;
+
+/**
+ * <p>
+ * This class fills an AcroForm template with many records, e.g. for mail
+ * merge runs of many thousand rows of tabular data. In contrast to
+ * {@link AcroFormPopulator#populateAndCopy(String, String, Map, boolean)}
+ * </p>
+ * <ul>
+ * <li>the template file is parsed once, and each record is filled into a
+ * fresh deep copy of the parsed object graph, made using the {@link PDFCloneUtility}
+ * which copies streams in their encoded form;
+ * <li>the fully qualified field names are resolved once to paths of indices
+ * in the <b>Fields</b> and <b>Kids</b> arrays, so the fields of a record copy
+ * are looked up without walking the field tree by name;
+ * <li>records are filled concurrently in a thread pool and streamed either to
+ * per-record outputs or, in record order, into one combined document. Only a
+ * bounded number of records is in flight at any time.
+ * </ul>
+ * <p>
+ * Values are set using {@link PDField#setValue(String)}; for push buttons the
+ * value is the path of an image file to show, like in the {@link AcroFormPopulator}.
+ * Unknown field names are rejected.
+ * </p>
+ * <p>
+ * The parsed template is kept open until the engine is closed. The copies
+ * have no encryption, and they get a new document ID when saved.
+ * </p>
+ *
+ * @author mkl
+ */
+public class AcroFormFillEngine implements Closeable {
+    /**
+     * Opens the output for a single filled record.
+     */
+    public interface RecordOutput {
+        OutputStream open(int index, Map<String, String> record) throws IOException;
+    }
+
+    public AcroFormFillEngine(File template) throws IOException {
+        this(Files.readAllBytes(template.toPath()));
+    }
+
+    public AcroFormFillEngine(byte[] template) throws IOException {
+        this.template = PDDocument.load(template);
+        try {
+            PDAcroForm acroForm = this.template.getDocumentCatalog().getAcroForm();
+            if (acroForm == null)
+                throw new IllegalArgumentException("The template has no AcroForm.");
+            COSArray fields = (COSArray) acroForm.getCOSObject().getDictionaryObject(COSName.FIELDS);
+            if (fields != null)
+                indexFields(acroForm, fields, null, new int[0]);
+        } catch (IOException | RuntimeException e) {
+            this.template.close();
+            throw e;
+        }
+    }
+
+    public void setDocumentLoader(DocumentLoader documentLoader) {
+        this.documentLoader = documentLoader != null ? documentLoader : DocumentLoader.DEFAULT;
+    }
+
+    /**
+     * Sets whether filled records shall be flattened; the default is <code>false</code>.
+     */
+    public void setFlatten(boolean flatten) {
+        this.flatten = flatten;
+    }
+
+    /**
+     * Sets an {@link ImageImportCache} to re-use push button images across
+     * records; by default images are created from their files for each record.
+     */
+    public void setImageImportCache(ImageImportCache imageImportCache) {
+        this.imageImportCache = imageImportCache;
+    }
+
+    /**
+     * Sets the number of threads filling records; the default is the number of processors.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive.");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the fully qualified names of the terminal fields of the template.
+     */
+    public Set<String> getFieldNames() {
+        return Collections.unmodifiableSet(fieldPaths.keySet());
+    }
+
+    /**
+     * Returns a new copy of the template filled with the given record; the
+     * caller has to close it.
+     */
+    public PDDocument fill(Map<String, String> record) throws IOException {
+        PDDocument document = copyTemplate();
+        try {
+            PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm();
+            for (Map.Entry<String, String> item : record.entrySet()) {
+                PDField field = resolve(acroForm, item.getKey());
+                if (field instanceof PDPushButton) {
+                    List<PDAnnotationWidget> widgets = field.getWidgets();
+                    if (widgets.isEmpty())
+                        throw new IllegalArgumentException("Push button without widgets: " + item.getKey());
+                    if (!new File(item.getValue()).exists())
+                        throw new IOException("Image file not found: " + item.getValue());
+                    AcroFormPopulator.setImageAppearance(document, (PDPushButton) field, widgets.get(0), item.getValue(), imageImportCache);
+                } else {
+                    field.setValue(item.getValue());
+                }
+            }
+            if (flatten)
+                acroForm.flatten();
+            return document;
+        } catch (IOException | RuntimeException e) {
+            document.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Fills the given records concurrently and saves each into the output
+     * opened for it. Returns the failures by record index; records are
+     * processed independently, so a failure does not stop the run.
+     */
+    public Map<Integer, Exception> fillAll(Iterable<Map<String, String>> records, RecordOutput output) throws IOException {
+        Map<Integer, Exception> failures = new LinkedHashMap<>();
+        run(records, (index, record) -> {
+            try (   PDDocument document = fill(record);
+                    OutputStream result = output.open(index, record)   ) {
+                document.save(result);
+            }
+            return null;
+        }, (index, document) -> {}, failures);
+        return failures;
+    }
+
+    /**
+     * Fills the given records concurrently and appends them in record order
+     * to a single combined document saved to the given output. Usually used
+     * with flattening, otherwise equally named fields of different records
+     * are renamed while merging. If any record fails, an exception is thrown
+     * and nothing is saved.
+     */
+    public void fillAllCombined(Iterable<Map<String, String>> records, OutputStream output) throws IOException {
+        PDFMergerUtility merger = new PDFMergerUtility();
+        Map<Integer, Exception> failures = new LinkedHashMap<>();
+        try (PDDocument combined = documentLoader.createDocument()) {
+            run(records, (index, record) -> fill(record), (index, document) -> {
+                try {
+                    merger.appendDocument(combined, document);
+                } finally {
+                    document.close();
+                }
+            }, failures);
+            if (!failures.isEmpty()) {
+                Map.Entry<Integer, Exception> failure = failures.entrySet().iterator().next();
+                throw new IOException("Failed to fill record " + failure.getKey(), failure.getValue());
+            }
+            combined.save(output);
+        }
+    }
+
+    /**
+     * Closes the parsed template.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (template) {
+            template.close();
+        }
+    }
+
+    //
+    // helper methods
+    //
+    /**
+     * Creates a new document with a deep copy of the catalog and the document
+     * information of the parsed template. Copying is serialized as the template
+     * streams are read from a shared buffer.
+     */
+    PDDocument copyTemplate() throws IOException {
+        PDDocument document = documentLoader.createDocument();
+        try {
+            COSDictionary trailer = document.getDocument().getTrailer();
+            synchronized (template) {
+                COSDictionary templateTrailer = template.getDocument().getTrailer();
+                PDFCloneUtility cloner = new PDFCloneUtility(document);
+                trailer.setItem(COSName.ROOT, cloner.cloneForNewDocument(templateTrailer.getDictionaryObject(COSName.ROOT)));
+                COSBase info = templateTrailer.getDictionaryObject(COSName.INFO);
+                if (info != null)
+                    trailer.setItem(COSName.INFO, cloner.cloneForNewDocument(info));
+                document.getDocument().setVersion(template.getDocument().getVersion());
+            }
+            return document;
+        } catch (IOException | RuntimeException e) {
+            document.close();
+            throw e;
+        }
+    }
+
+    void indexFields(PDAcroForm acroForm, COSArray fields, PDNonTerminalField parent, int[] parentPath) {
+        for (int i = 0; i < fields.size(); i++) {
+            COSBase object = fields.getObject(i);
+            if (!(object instanceof COSDictionary))
+                continue;
+            PDField field = PDField.fromDictionary(acroForm, (COSDictionary) object, parent);
+            if (field == null)
+                continue;
+            int[] path = new int[parentPath.length + 1];
+            System.arraycopy(parentPath, 0, path, 0, parentPath.length);
+            path[parentPath.length] = i;
+            if (field instanceof PDNonTerminalField) {
+                COSArray kids = (COSArray) field.getCOSObject().getDictionaryObject(COSName.KIDS);
+                if (kids != null)
+                    indexFields(acroForm, kids, (PDNonTerminalField) field, path);
+            } else {
+                fieldPaths.putIfAbsent(field.getFullyQualifiedName(), path);
+            }
+        }
+    }
+
+    /**
+     * Resolves the field with the given name in a copy of the template using
+     * the pre-resolved path.
+     */
+    PDField resolve(PDAcroForm acroForm, String name) throws IOException {
+        int[] path = fieldPaths.get(name);
+        if (path == null)
+            throw new IllegalArgumentException("No field found with name: " + name);
+        COSArray array = (COSArray) acroForm.getCOSObject().getDictionaryObject(COSName.FIELDS);
+        PDField field = null;
+        for (int index : path) {
+            COSBase object = array != null && index < array.size() ? array.getObject(index) : null;
+            if (!(object instanceof COSDictionary))
+                throw new IOException("Template copy deviates from the template at field " + name);
+            field = PDField.fromDictionary(acroForm, (COSDictionary) object, (PDNonTerminalField) field);
+            array = (COSArray) field.getCOSObject().getDictionaryObject(COSName.KIDS);
+        }
+        return field;
+    }
+
+    /**
+     * Runs the given task for the records in a thread pool with a bounded number
+     * of records in flight, and hands the results to the given consumer in record
+     * order on the calling thread. Task failures are collected, consumer failures
+     * and interruptions stop the run, cancelling records not started yet.
+     */
+    <T> void run(Iterable<Map<String, String>> records, RecordTask<T> task, ResultConsumer<T> consumer, Map<Integer, Exception> failures) throws IOException {
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+        Deque<Future<T>> inFlight = new ArrayDeque<>();
+        int index = 0;
+        int consumed = 0;
+        try {
+            Iterator<Map<String, String>> iterator = records.iterator();
+            while (iterator.hasNext() || !inFlight.isEmpty()) {
+                if (iterator.hasNext() && inFlight.size() < 2 * parallelism) {
+                    Map<String, String> record = iterator.next();
+                    int recordIndex = index++;
+                    inFlight.add(executorService.submit(() -> task.run(recordIndex, record)));
+                    continue;
+                }
+                int recordIndex = consumed++;
+                try {
+                    T result = inFlight.poll().get();
+                    consumer.accept(recordIndex, result);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error)
+                        throw (Error) cause;
+                    failures.put(recordIndex, (Exception) cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while filling records.", e);
+        } finally {
+            // tasks still queued are not run anymore, so they are cancelled to not
+            // wait for them below; running tasks finish and their documents are closed
+            for (Runnable queued : executorService.shutdownNow()) {
+                if (queued instanceof Future)
+                    ((Future<?>) queued).cancel(false);
+            }
+            // close documents filled but not consumed anymore
+            for (Future<T> future : inFlight) {
+                try {
+                    T result = future.get();
+                    if (result instanceof PDDocument)
+                        ((PDDocument) result).close();
+                } catch (InterruptedException | ExecutionException | IOException | RuntimeException e) {
+                    // already failing
+                }
+            }
+        }
+    }
+
+    interface RecordTask<T> {
+        T run(int index, Map<String, String> record) throws IOException;
+    }
+
+    interface ResultConsumer<T> {
+        void accept(int index, T result) throws IOException;
+    }
+
+    final PDDocument template;
+    final Map<String, int[]> fieldPaths = new LinkedHashMap<>();
+    DocumentLoader documentLoader = DocumentLoader.DEFAULT;
+    boolean flatten = false;
+    ImageImportCache imageImportCache = null;
+    int parallelism = Runtime.getRuntime().availableProcessors();
+}
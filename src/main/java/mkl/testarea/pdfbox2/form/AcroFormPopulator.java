@@ -18,11 +18,12 @@ import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceDictionary;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
-import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
 import org.apache.pdfbox.pdmodel.interactive.form.PDField;
 import org.apache.pdfbox.pdmodel.interactive.form.PDPushButton;
 import org.apache.pdfbox.pdmodel.interactive.form.PDTextField;
 
+import mkl.testarea.pdfbox2.io.DocumentLoader;
+
 /**
  * <a href="https://stackoverflow.com/questions/46799087/how-to-insert-image-programmatically-in-to-acroform-field-using-java-pdfbox">
  * How to insert image programmatically in to AcroForm field using java PDFBox?
@@ -34,6 +35,10 @@ import org.apache.pdfbox.pdmodel.interactive.form.PDTextField;
  * A flag parameter <code>flatten</code> was added to <code>populateAndCopy</code>
  * to allow deciding whether or not to flatten the form.
  * </p>
+ * <p>
+ * Fields are looked up and flattened using a {@link FieldIndex} built once
+ * per form instead of walking the field tree for each placeholder.
+ * </p>
  * 
  * @author Renat Gatin
  */
@@ -57,13 +62,21 @@ public class AcroFormPopulator {
     }
 
     void populateAndCopy(String originalPdf, String targetPdf, Map<String, String> data, boolean flatten) throws IOException {
+        populateAndCopy(originalPdf, targetPdf, data, flatten, DocumentLoader.DEFAULT);
+    }
+
+    /**
+     * This variant opens the original PDF using the given {@link DocumentLoader},
+     * e.g. to bound the heap usage for very large forms.
+     */
+    void populateAndCopy(String originalPdf, String targetPdf, Map<String, String> data, boolean flatten, DocumentLoader documentLoader) throws IOException {
         File file = new File(originalPdf);
-        PDDocument document = PDDocument.load(file);
-        PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm();
+        PDDocument document = documentLoader.load(file);
+        FieldIndex fieldIndex = new FieldIndex(document);
 
         for (Map.Entry<String, String> item : data.entrySet()) {
             String key = item.getKey();
-            PDField field = acroForm.getField(key);
+            PDField field = fieldIndex.getField(key);
             if (field != null) {
                 System.out.print("Form field with placeholder name: '" + key + "' found");
 
@@ -84,33 +97,7 @@ public class AcroFormPopulator {
                         File imageFile = new File(filePath);
 
                         if (imageFile.exists()) {
-                            /*
-                             * BufferedImage bufferedImage = ImageIO.read(imageFile); 
-                             * PDImageXObject pdImageXObject = LosslessFactory.createFromImage(document, bufferedImage);
-                             */
-                            PDImageXObject pdImageXObject = PDImageXObject.createFromFile(filePath, document);
-                            float imageScaleRatio = (float) pdImageXObject.getHeight() / (float) pdImageXObject.getWidth();
-
-                            PDRectangle buttonPosition = getFieldArea(pdPushButton);
-                            float height = buttonPosition.getHeight();
-                            float width = height / imageScaleRatio;
-                            float x = buttonPosition.getLowerLeftX();
-                            float y = buttonPosition.getLowerLeftY();
-
-                            PDAppearanceStream pdAppearanceStream = new PDAppearanceStream(document);
-                            pdAppearanceStream.setResources(new PDResources());
-                            try (PDPageContentStream pdPageContentStream = new PDPageContentStream(document, pdAppearanceStream)) {
-                                pdPageContentStream.drawImage(pdImageXObject, x, y, width, height);
-                            }
-                            pdAppearanceStream.setBBox(new PDRectangle(x, y, width, height));
-
-                            PDAppearanceDictionary pdAppearanceDictionary = annotationWidget.getAppearance();
-                            if (pdAppearanceDictionary == null) {
-                                pdAppearanceDictionary = new PDAppearanceDictionary();
-                                annotationWidget.setAppearance(pdAppearanceDictionary);
-                            }
-
-                            pdAppearanceDictionary.setNormalAppearance(pdAppearanceStream);
+                            setImageAppearance(document, pdPushButton, annotationWidget, filePath, imageImportCache);
                             System.out.println("Image '" + filePath + "' inserted");
 
                         } else {
@@ -129,16 +116,62 @@ public class AcroFormPopulator {
 
         // you can optionally flatten the document to merge acroform lay to main one
         if (flatten)
-            acroForm.flatten();
+            new ParallelFlattener().flatten(document, fieldIndex);
 
         document.save(targetPdf);
         document.close();
         System.out.println("Done");
     }
 
-    private PDRectangle getFieldArea(PDField field) {
+    /**
+     * Sets an {@link ImageImportCache} to re-use images across filled forms;
+     * by default images are created from their files for each form.
+     */
+    public void setImageImportCache(ImageImportCache imageImportCache) {
+        this.imageImportCache = imageImportCache;
+    }
+
+    /**
+     * Sets the normal appearance of the given push button widget to the image
+     * from the given file, scaled to the height of the button area. The image
+     * is retrieved via the given cache unless it is <code>null</code>.
+     */
+    static void setImageAppearance(PDDocument document, PDPushButton pdPushButton, PDAnnotationWidget annotationWidget, String filePath, ImageImportCache imageImportCache) throws IOException {
+        /*
+         * BufferedImage bufferedImage = ImageIO.read(imageFile); 
+         * PDImageXObject pdImageXObject = LosslessFactory.createFromImage(document, bufferedImage);
+         */
+        PDImageXObject pdImageXObject = imageImportCache != null ? imageImportCache.getImage(document, new File(filePath))
+                : PDImageXObject.createFromFile(filePath, document);
+        float imageScaleRatio = (float) pdImageXObject.getHeight() / (float) pdImageXObject.getWidth();
+
+        PDRectangle buttonPosition = getFieldArea(pdPushButton);
+        float height = buttonPosition.getHeight();
+        float width = height / imageScaleRatio;
+        float x = buttonPosition.getLowerLeftX();
+        float y = buttonPosition.getLowerLeftY();
+
+        PDAppearanceStream pdAppearanceStream = new PDAppearanceStream(document);
+        pdAppearanceStream.setResources(new PDResources());
+        try (PDPageContentStream pdPageContentStream = new PDPageContentStream(document, pdAppearanceStream)) {
+            pdPageContentStream.drawImage(pdImageXObject, x, y, width, height);
+        }
+        pdAppearanceStream.setBBox(new PDRectangle(x, y, width, height));
+
+        PDAppearanceDictionary pdAppearanceDictionary = annotationWidget.getAppearance();
+        if (pdAppearanceDictionary == null) {
+            pdAppearanceDictionary = new PDAppearanceDictionary();
+            annotationWidget.setAppearance(pdAppearanceDictionary);
+        }
+
+        pdAppearanceDictionary.setNormalAppearance(pdAppearanceStream);
+    }
+
+    static PDRectangle getFieldArea(PDField field) {
         COSDictionary fieldDict = field.getCOSObject();
         COSArray fieldAreaArray = (COSArray) fieldDict.getDictionaryObject(COSName.RECT);
         return new PDRectangle(fieldAreaArray);
     }
+
+    ImageImportCache imageImportCache = null;
 }
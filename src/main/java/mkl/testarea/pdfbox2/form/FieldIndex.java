@@ -0,0 +1,165 @@
+package mkl.testarea.pdfbox2.form;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDNonTerminalField;
+
+/**
+ * <p>
+ * This class indexes the fields of a document by their fully qualified names
+ * and their widgets by the pages they are on, e.g. for large forms with many
+ * thousand fields where {@link PDAcroForm#getField(String)} walking the field
+ * tree by partial names for each lookup becomes a bottleneck.
+ * </p>
+ * <p>
+ * Both maps are built in one traversal of the field tree; the pages of the
+ * widgets are taken from their <b>P</b> entries. Only if a widget without such
+ * an entry is looked up, the page annotations are scanned once, cf. the
+ * <code>DetermineWidgetPage</code> test. When fields are added to or removed
+ * from the form, the index is updated using {@link #add(PDField)} and
+ * {@link #remove(PDField)} instead of being rebuilt.
+ * </p>
+ * <p>
+ * The index is not thread-safe.
+ * </p>
+ *
+ * @author mkl
+ */
+public class FieldIndex {
+    public FieldIndex(PDDocument document) {
+        this.document = document;
+        PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm();
+        if (acroForm != null) {
+            for (PDField field : acroForm.getFieldTree())
+                index(field);
+        }
+    }
+
+    /**
+     * Returns the field with the given fully qualified name or <code>null</code>
+     * if there is none; of equally named fields the first one in field tree
+     * order is returned.
+     */
+    public PDField getField(String name) {
+        List<PDField> namedFields = fieldsByName.get(name);
+        return namedFields != null ? namedFields.get(0) : null;
+    }
+
+    /**
+     * Returns all indexed fields, terminal and non-terminal ones, including
+     * equally named ones, in field tree order.
+     */
+    public Collection<PDField> getFields() {
+        return Collections.unmodifiableCollection(fields.values());
+    }
+
+    /**
+     * Returns the page the given widget is on or <code>null</code> if it is on none.
+     */
+    public PDPage getPage(PDAnnotationWidget widget) throws IOException {
+        PDPage page = widgetPages.get(widget.getCOSObject());
+        if (page == null && !annotationsScanned) {
+            scanAnnotations();
+            page = widgetPages.get(widget.getCOSObject());
+        }
+        return page;
+    }
+
+    /**
+     * Returns the index of the page the given widget is on or -1 if it is on none.
+     */
+    public int getPageIndex(PDAnnotationWidget widget) throws IOException {
+        PDPage page = getPage(widget);
+        if (page == null)
+            return -1;
+        if (pageIndices == null) {
+            pageIndices = new HashMap<>();
+            int index = 0;
+            for (PDPage documentPage : document.getPages())
+                pageIndices.put(documentPage.getCOSObject(), index++);
+        }
+        Integer index = pageIndices.get(page.getCOSObject());
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Indexes the given field and its descendants, e.g. after adding it to the form.
+     */
+    public void add(PDField field) {
+        index(field);
+        if (field instanceof PDNonTerminalField) {
+            for (PDField child : ((PDNonTerminalField) field).getChildren())
+                add(child);
+        }
+    }
+
+    /**
+     * Removes the given field and its descendants from the index, e.g. after
+     * removing it from the form or flattening it. If another field has the
+     * same name, it is returned by {@link #getField(String)} from now on.
+     */
+    public void remove(PDField field) {
+        COSDictionary fieldDictionary = field.getCOSObject();
+        fields.remove(fieldDictionary);
+        String name = field.getFullyQualifiedName();
+        List<PDField> namedFields = fieldsByName.get(name);
+        if (namedFields != null) {
+            namedFields.removeIf(namedField -> namedField.getCOSObject() == fieldDictionary);
+            if (namedFields.isEmpty())
+                fieldsByName.remove(name);
+        }
+        for (PDAnnotationWidget widget : field.getWidgets())
+            widgetPages.remove(widget.getCOSObject());
+        if (field instanceof PDNonTerminalField) {
+            for (PDField child : ((PDNonTerminalField) field).getChildren())
+                remove(child);
+        }
+    }
+
+    //
+    // helper methods
+    //
+    void index(PDField field) {
+        if (fields.putIfAbsent(field.getCOSObject(), field) != null)
+            return;
+        fieldsByName.computeIfAbsent(field.getFullyQualifiedName(), name -> new ArrayList<>(1)).add(field);
+        for (PDAnnotationWidget widget : field.getWidgets()) {
+            PDPage page = widget.getPage();
+            if (page != null)
+                widgetPages.put(widget.getCOSObject(), page);
+            else
+                annotationsScanned = false;
+        }
+    }
+
+    void scanAnnotations() throws IOException {
+        for (PDPage page : document.getPages()) {
+            for (PDAnnotation annotation : page.getAnnotations()) {
+                if (annotation instanceof PDAnnotationWidget)
+                    widgetPages.putIfAbsent(annotation.getCOSObject(), page);
+            }
+        }
+        annotationsScanned = true;
+    }
+
+    final PDDocument document;
+    final Map<COSDictionary, PDField> fields = new LinkedHashMap<>();
+    final Map<String, List<PDField>> fieldsByName = new HashMap<>();
+    final Map<COSDictionary, PDPage> widgetPages = new HashMap<>();
+    Map<COSDictionary, Integer> pageIndices = null;
+    boolean annotationsScanned = true;
+}
@@ -0,0 +1,263 @@
+package mkl.testarea.pdfbox2.form;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.util.Hex;
+
+/**
+ * <p>
+ * This class caches imported images by the SHA-256 hash of their file
+ * content, e.g. for logos and photos filled into push buttons of many
+ * forms by the {@link AcroFormPopulator} or the {@link AcroFormFillEngine}.
+ * </p>
+ * <p>
+ * On a cache miss the image is created like {@link PDImageXObject#createFromFile(String, PDDocument)}
+ * does, i.e. JPEGs are embedded as is and other images are decoded and Flate
+ * compressed, and the resulting stream dictionaries and encoded stream data
+ * (including nested streams like a soft mask or an ICC profile) are kept. On a hit they are merely copied into the
+ * target document, no decoding or compressing is required. Within a document
+ * the same image is shared by all requests.
+ * </p>
+ * <p>
+ * The cache is bounded by the encoded size of the cached images; the least
+ * recently used ones are evicted first. It is thread-safe.
+ * </p>
+ *
+ * @author mkl
+ */
+public class ImageImportCache {
+    /**
+     * @param maxBytes the maximum total size of the encoded stream data to keep.
+     */
+    public ImageImportCache(long maxBytes) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("The maximum cache size must be positive.");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns an image XObject in the given document for the image in the given file.
+     */
+    public PDImageXObject getImage(PDDocument document, File file) throws IOException {
+        byte[] content = Files.readAllBytes(file.toPath());
+        String hash = hash(content);
+
+        synchronized (this) {
+            Map<String, PDImageXObject> documentImages = imagesByDocument.get(document);
+            PDImageXObject image = documentImages != null ? documentImages.get(hash) : null;
+            if (image != null) {
+                hits++;
+                return image;
+            }
+        }
+
+        CachedStream cachedStream;
+        synchronized (this) {
+            cachedStream = cache.get(hash);
+        }
+        if (cachedStream != null) {
+            synchronized (this) {
+                hits++;
+            }
+        } else {
+            cachedStream = importImage(content, file.getName());
+            synchronized (this) {
+                misses++;
+                CachedStream previous = cache.put(hash, cachedStream);
+                footprint += cachedStream.size - (previous != null ? previous.size : 0);
+                evict();
+            }
+        }
+
+        PDImageXObject image = new PDImageXObject(new PDStream(cachedStream.materialize(document)), null);
+        synchronized (this) {
+            imagesByDocument.computeIfAbsent(document, d -> new HashMap<>()).put(hash, image);
+        }
+        return image;
+    }
+
+    public synchronized long getFootprint() {
+        return footprint;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    //
+    // helper methods
+    //
+    /**
+     * Creates the image in a scratch document and captures its streams.
+     */
+    static CachedStream importImage(byte[] content, String name) throws IOException {
+        try (PDDocument scratch = new PDDocument()) {
+            PDImageXObject image = PDImageXObject.createFromByteArray(scratch, content, name);
+            return new CachedStream(image.getCOSObject());
+        }
+    }
+
+    void evict() {
+        Iterator<CachedStream> iterator = cache.values().iterator();
+        while (footprint > maxBytes && iterator.hasNext()) {
+            CachedStream eldest = iterator.next();
+            // keep at least the entry just added
+            if (cache.size() == 1)
+                break;
+            footprint -= eldest.size;
+            iterator.remove();
+        }
+    }
+
+    static String hash(byte[] data) {
+        try {
+            return Hex.getString(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * An immutable, document independent copy of a stream: its dictionary
+     * without the <b>Length</b>, and its encoded data. Nested streams, e.g.
+     * the soft mask of an image or the ICC profile in its color space array,
+     * are captured recursively as {@link CachedStream}s, wherever they occur
+     * in the dictionary; a stream referenced multiple times is captured once.
+     */
+    static class CachedStream {
+        CachedStream(COSStream stream) throws IOException {
+            this(stream, new IdentityHashMap<>(), true);
+        }
+
+        CachedStream(COSStream stream, Map<COSStream, CachedStream> captured, boolean outermost) throws IOException {
+            captured.put(stream, this);
+            for (Map.Entry<COSName, COSBase> entry : stream.entrySet()) {
+                if (!COSName.LENGTH.equals(entry.getKey()))
+                    entries.put(entry.getKey(), capture(entry.getValue(), captured));
+            }
+            try (InputStream rawData = stream.createRawInputStream()) {
+                data = IOUtils.toByteArray(rawData);
+            }
+            if (outermost) {
+                long size = 0;
+                for (CachedStream cachedStream : captured.values())
+                    size += cachedStream.data.length;
+                this.size = size;
+            } else {
+                this.size = data.length;
+            }
+        }
+
+        /**
+         * Creates a copy of the cached stream in the given document.
+         */
+        COSStream materialize(PDDocument document) throws IOException {
+            return materialize(document, new IdentityHashMap<>());
+        }
+
+        COSStream materialize(PDDocument document, Map<CachedStream, COSStream> materialized) throws IOException {
+            COSStream stream = document.getDocument().createCOSStream();
+            materialized.put(this, stream);
+            for (Map.Entry<COSName, Object> entry : entries.entrySet())
+                stream.setItem(entry.getKey(), materialize(entry.getValue(), document, materialized));
+            try (OutputStream rawData = stream.createRawOutputStream()) {
+                rawData.write(data);
+            }
+            return stream;
+        }
+
+        /**
+         * Captures a stream dictionary value: dictionaries as maps, arrays as lists,
+         * streams as {@link CachedStream}s, and strings as copies; names, numbers,
+         * and the other simple objects are immutable and can be shared.
+         */
+        static Object capture(COSBase value, Map<COSStream, CachedStream> captured) throws IOException {
+            if (value instanceof COSObject)
+                value = ((COSObject) value).getObject();
+            if (value instanceof COSStream) {
+                CachedStream cachedStream = captured.get(value);
+                return cachedStream != null ? cachedStream : new CachedStream((COSStream) value, captured, false);
+            } else if (value instanceof COSDictionary) {
+                Map<COSName, Object> dictionary = new LinkedHashMap<>();
+                for (Map.Entry<COSName, COSBase> entry : ((COSDictionary) value).entrySet())
+                    dictionary.put(entry.getKey(), capture(entry.getValue(), captured));
+                return dictionary;
+            } else if (value instanceof COSArray) {
+                List<Object> array = new ArrayList<>();
+                for (COSBase element : (COSArray) value)
+                    array.add(capture(element, captured));
+                return array;
+            } else if (value instanceof COSString) {
+                return new COSString(((COSString) value).getBytes());
+            }
+            return value != null ? value : COSNull.NULL;
+        }
+
+        /**
+         * Creates the document objects for a value captured by {@link #capture(COSBase, Map)}.
+         */
+        @SuppressWarnings("unchecked")
+        static COSBase materialize(Object value, PDDocument document, Map<CachedStream, COSStream> materialized) throws IOException {
+            if (value instanceof CachedStream) {
+                COSStream stream = materialized.get(value);
+                return stream != null ? stream : ((CachedStream) value).materialize(document, materialized);
+            } else if (value instanceof Map) {
+                COSDictionary dictionary = new COSDictionary();
+                for (Map.Entry<COSName, Object> entry : ((Map<COSName, Object>) value).entrySet())
+                    dictionary.setItem(entry.getKey(), materialize(entry.getValue(), document, materialized));
+                return dictionary;
+            } else if (value instanceof List) {
+                COSArray array = new COSArray();
+                for (Object element : (List<Object>) value)
+                    array.add(materialize(element, document, materialized));
+                return array;
+            } else if (value instanceof COSString) {
+                return new COSString(((COSString) value).getBytes());
+            }
+            return (COSBase) value;
+        }
+
+        final Map<COSName, Object> entries = new LinkedHashMap<>();
+        final byte[] data;
+        /** for the outermost stream the total encoded size of all captured streams */
+        final long size;
+    }
+
+    final long maxBytes;
+    final Map<String, CachedStream> cache = new LinkedHashMap<>(16, 0.75f, true);
+    final Map<PDDocument, Map<String, PDImageXObject>> imagesByDocument = new WeakHashMap<>();
+    long footprint = 0;
+    long hits = 0;
+    long misses = 0;
+}
@@ -0,0 +1,132 @@
+package mkl.testarea.pdfbox2.form;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSUpdateInfo;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDNonTerminalField;
+
+/**
+ * <p>
+ * This class fills fields of a form and saves the changes as an incremental
+ * update, writing only the objects of fields whose value actually changed.
+ * </p>
+ * <p>
+ * In contrast to refreshing all appearances and marking objects broadly,
+ * like in the <code>RefreshAppearances</code> and <code>FillInFormSaveIncremental</code>
+ * tests, {@link #setValue(String, String)} compares the new value with the
+ * current one and only sets it if it differs, so PDFBox regenerates the
+ * appearances of the widgets of that field alone. Then exactly the field
+ * dictionary, its ancestors and <b>Kids</b> arrays, its widgets, and their
+ * appearance dictionaries and regenerated streams are marked as updated. On save merely
+ * the catalog, the AcroForm dictionary, and the <b>Fields</b> array are
+ * marked additionally to chain the changed objects to the document root.
+ * </p>
+ * <p>
+ * Appearances are regenerated by PDFBox only if the AcroForm <b>NeedAppearances</b>
+ * flag is not set. Usage rights signatures and XFA forms are left alone; if
+ * present, the caller has to remove them as explained in the
+ * <code>FillInFormSaveIncremental</code> test.
+ * </p>
+ *
+ * @author mkl
+ */
+public class IncrementalFillSession {
+    public IncrementalFillSession(PDDocument document) {
+        this.document = document;
+        this.acroForm = document.getDocumentCatalog().getAcroForm();
+        if (acroForm == null)
+            throw new IllegalArgumentException("The document has no AcroForm.");
+        this.fieldIndex = new FieldIndex(document);
+    }
+
+    /**
+     * Sets the value of the field with the given fully qualified name if it
+     * differs from its current value; returns whether it did.
+     */
+    public boolean setValue(String name, String value) throws IOException {
+        PDField field = fieldIndex.getField(name);
+        if (field == null)
+            throw new IllegalArgumentException("No field found with name: " + name);
+        if (value.equals(field.getValueAsString()))
+            return false;
+        field.setValue(value);
+        markField(field);
+        changedFields.put(field.getFullyQualifiedName(), field);
+        return true;
+    }
+
+    /**
+     * Returns the fully qualified names of the fields changed in this session.
+     */
+    public Set<String> getChangedFieldNames() {
+        return Collections.unmodifiableSet(changedFields.keySet());
+    }
+
+    /**
+     * Saves the changes of this session as incremental update to the given output;
+     * nothing is written if no field has changed. Returns whether an update was written.
+     */
+    public boolean saveIncremental(OutputStream output) throws IOException {
+        if (changedFields.isEmpty())
+            return false;
+        markUpdated(document.getDocumentCatalog().getCOSObject());
+        markUpdated(acroForm.getCOSObject());
+        markUpdated(acroForm.getCOSObject().getDictionaryObject(COSName.FIELDS));
+        document.saveIncremental(output);
+        return true;
+    }
+
+    //
+    // helper methods
+    //
+    /**
+     * Marks the given field with its ancestors, <b>Kids</b> arrays, and
+     * widgets with their appearances as updated.
+     */
+    void markField(PDField field) {
+        for (PDAnnotationWidget widget : field.getWidgets()) {
+            COSDictionary widgetDictionary = widget.getCOSObject();
+            markUpdated(widgetDictionary);
+            COSBase appearance = widgetDictionary.getDictionaryObject(COSName.AP);
+            if (appearance instanceof COSDictionary) {
+                markUpdated(appearance);
+                // appearance sub-dictionaries of states, e.g. of check boxes, are
+                // not regenerated, merely the appearance state of the widget changes
+                for (COSName key : new COSName[] {COSName.N, COSName.R, COSName.D}) {
+                    COSBase entry = ((COSDictionary) appearance).getDictionaryObject(key);
+                    if (entry instanceof COSStream)
+                        markUpdated(entry);
+                }
+            }
+        }
+        markUpdated(field.getCOSObject());
+        markUpdated(field.getCOSObject().getDictionaryObject(COSName.KIDS));
+        for (PDNonTerminalField parent = field.getParent(); parent != null; parent = parent.getParent()) {
+            markUpdated(parent.getCOSObject());
+            markUpdated(parent.getCOSObject().getDictionaryObject(COSName.KIDS));
+        }
+    }
+
+    static void markUpdated(COSBase object) {
+        if (object instanceof COSUpdateInfo)
+            ((COSUpdateInfo) object).setNeedToBeUpdated(true);
+    }
+
+    final PDDocument document;
+    final PDAcroForm acroForm;
+    final FieldIndex fieldIndex;
+    final Map<String, PDField> changedFields = new LinkedHashMap<>();
+}
@@ -0,0 +1,328 @@
+package mkl.testarea.pdfbox2.form;
+
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDPageContentStream.AppendMode;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.apache.pdfbox.util.Matrix;
+
+/**
+ * <p>
+ * This class flattens AcroForm fields like {@link PDAcroForm#flatten()} and
+ * {@link PDAcroForm#flatten(List, boolean)} (without refreshing appearances)
+ * but processes the pages concurrently, e.g. for generated forms with many
+ * thousand pages.
+ * </p>
+ * <p>
+ * The widgets to flatten are grouped by page. Each page which exclusively
+ * owns the objects flattening changes, i.e. its <b>Resources</b> dictionary
+ * with its <b>XObject</b> sub-dictionary and its <b>Contents</b> array, is
+ * processed in a thread pool: its widget appearances are drawn into new
+ * content streams appended to the page and its widget annotations are
+ * removed. Pages sharing such objects with other pages, e.g. inheriting
+ * their resources from the page tree, are processed afterwards on the calling
+ * thread in page order, followed by all document level changes, i.e. the
+ * removal of the fields and of the XFA form. As each page is processed exactly
+ * like {@link PDAcroForm#flatten(List, boolean)} does it, the saved result is
+ * identical to that of a sequential flattening.
+ * </p>
+ * <p>
+ * This relies on concurrent reads of the parsed object graph and concurrent
+ * stream creation in the document's scratch file being safe, which they are
+ * in PDFBox 2.0 as all objects are parsed when loading.
+ * </p>
+ *
+ * @author mkl
+ */
+public class ParallelFlattener {
+    /**
+     * Sets the number of threads processing pages; the default is the number of processors.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive.");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Flattens all fields of the AcroForm of the given document.
+     */
+    public void flatten(PDDocument document) throws IOException {
+        PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm();
+        if (acroForm == null)
+            return;
+        List<PDField> fields = new ArrayList<>();
+        for (PDField field : acroForm.getFieldTree())
+            fields.add(field);
+        flatten(document, fields);
+    }
+
+    /**
+     * Flattens all fields of the given index; the flattened fields are removed
+     * from the index. The widget pages are taken from the index, so widgets
+     * without page reference do not require a scan of all page annotations.
+     */
+    public void flatten(PDDocument document, FieldIndex fieldIndex) throws IOException {
+        flatten(document, new ArrayList<>(fieldIndex.getFields()), fieldIndex);
+    }
+
+    /**
+     * Flattens the given fields of the AcroForm of the given document.
+     */
+    public void flatten(PDDocument document, List<PDField> fields) throws IOException {
+        flatten(document, fields, null);
+    }
+
+    /**
+     * Flattens the given fields of the AcroForm of the given document; if an
+     * index is given, the widget pages are taken from it and the flattened fields
+     * are removed from it.
+     */
+    public void flatten(PDDocument document, List<PDField> fields, FieldIndex fieldIndex) throws IOException {
+        if (fields.isEmpty())
+            return;
+        PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm();
+        if (acroForm == null)
+            throw new IllegalArgumentException("The document has no AcroForm.");
+        if (acroForm.xfaIsDynamic())
+            return;
+
+        Map<COSDictionary, Set<COSDictionary>> pagesWidgetsMap = fieldIndex != null ?
+                buildPagesWidgetsMap(fieldIndex, fields) : buildPagesWidgetsMap(document, fields);
+        List<PDPage> pages = new ArrayList<>();
+        for (PDPage page : document.getPages())
+            pages.add(page);
+        Set<COSBase> shared = findSharedObjects(pages);
+
+        List<PDPage> sequentialPages = new ArrayList<>();
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (PDPage page : pages) {
+                Set<COSDictionary> widgets = pagesWidgetsMap.get(page.getCOSObject());
+                if (widgets == null || isShared(page, shared)) {
+                    sequentialPages.add(page);
+                } else {
+                    futures.add(executorService.submit(() -> {
+                        flattenPage(document, page, widgets);
+                        return null;
+                    }));
+                }
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException)
+                        throw (IOException) cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException) cause;
+                    if (cause instanceof Error)
+                        throw (Error) cause;
+                    throw new IOException("Failed to flatten page.", cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flattening pages.", e);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        for (PDPage page : sequentialPages)
+            flattenPage(document, page, pagesWidgetsMap.get(page.getCOSObject()));
+
+        removeFields(acroForm, fields);
+        acroForm.getCOSObject().removeItem(COSName.XFA);
+        if (fieldIndex != null) {
+            for (PDField field : fields)
+                fieldIndex.remove(field);
+        }
+    }
+
+    //
+    // helper methods
+    //
+    /**
+     * Draws the visible widgets of the given set into the page and removes
+     * all widgets of the set from the page annotations, like the page loop of
+     * {@link PDAcroForm#flatten(List, boolean)}.
+     */
+    static void flattenPage(PDDocument document, PDPage page, Set<COSDictionary> widgetsForPage) throws IOException {
+        boolean isContentStreamWrapped = false;
+        List<PDAnnotation> annotations = new ArrayList<>();
+        for (PDAnnotation annotation : page.getAnnotations()) {
+            if (widgetsForPage == null || !widgetsForPage.contains(annotation.getCOSObject())) {
+                annotations.add(annotation);
+            } else if (isVisibleAnnotation(annotation)) {
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page, AppendMode.APPEND, true, !isContentStreamWrapped)) {
+                    isContentStreamWrapped = true;
+                    PDAppearanceStream appearanceStream = annotation.getNormalAppearanceStream();
+                    PDFormXObject fieldObject = new PDFormXObject(appearanceStream.getCOSObject());
+                    contentStream.saveGraphicsState();
+                    contentStream.transform(resolveTransformationMatrix(annotation, appearanceStream));
+                    contentStream.drawForm(fieldObject);
+                    contentStream.restoreGraphicsState();
+                }
+            }
+        }
+        page.setAnnotations(annotations);
+    }
+
+    static boolean isVisibleAnnotation(PDAnnotation annotation) {
+        if (annotation.isInvisible() || annotation.isHidden())
+            return false;
+        PDAppearanceStream normalAppearanceStream = annotation.getNormalAppearanceStream();
+        if (normalAppearanceStream == null)
+            return false;
+        PDRectangle bbox = normalAppearanceStream.getBBox();
+        return bbox != null && bbox.getWidth() > 0 && bbox.getHeight() > 0;
+    }
+
+    static Matrix resolveTransformationMatrix(PDAnnotation annotation, PDAppearanceStream appearanceStream) {
+        GeneralPath transformedBox = appearanceStream.getBBox().transform(appearanceStream.getMatrix());
+        Rectangle2D transformedAppearanceBox = transformedBox.getBounds2D();
+        PDRectangle annotationRect = annotation.getRectangle();
+        Matrix transformationMatrix = new Matrix();
+        transformationMatrix.translate((float) (annotationRect.getLowerLeftX() - transformedAppearanceBox.getX()),
+                (float) (annotationRect.getLowerLeftY() - transformedAppearanceBox.getY()));
+        transformationMatrix.scale((float) (annotationRect.getWidth() / transformedAppearanceBox.getWidth()),
+                (float) (annotationRect.getHeight() / transformedAppearanceBox.getHeight()));
+        return transformationMatrix;
+    }
+
+    /**
+     * Maps page dictionaries to the widget dictionaries to flatten on them. If
+     * a widget has no page reference, all widgets are mapped by the page
+     * annotations instead, like {@link PDAcroForm} does.
+     */
+    static Map<COSDictionary, Set<COSDictionary>> buildPagesWidgetsMap(PDDocument document, List<PDField> fields) throws IOException {
+        Map<COSDictionary, Set<COSDictionary>> pagesWidgetsMap = new HashMap<>();
+        boolean hasMissingPageRef = false;
+        for (PDField field : fields) {
+            for (PDAnnotationWidget widget : field.getWidgets()) {
+                PDPage page = widget.getPage();
+                if (page != null)
+                    pagesWidgetsMap.computeIfAbsent(page.getCOSObject(), p -> new HashSet<>()).add(widget.getCOSObject());
+                else
+                    hasMissingPageRef = true;
+            }
+        }
+        if (!hasMissingPageRef)
+            return pagesWidgetsMap;
+
+        for (PDPage page : document.getPages()) {
+            for (PDAnnotation annotation : page.getAnnotations()) {
+                if (annotation instanceof PDAnnotationWidget)
+                    pagesWidgetsMap.computeIfAbsent(page.getCOSObject(), p -> new HashSet<>()).add(annotation.getCOSObject());
+            }
+        }
+        return pagesWidgetsMap;
+    }
+
+    /**
+     * Maps page dictionaries to the widget dictionaries to flatten on them
+     * using the pages from the given index.
+     */
+    static Map<COSDictionary, Set<COSDictionary>> buildPagesWidgetsMap(FieldIndex fieldIndex, List<PDField> fields) throws IOException {
+        Map<COSDictionary, Set<COSDictionary>> pagesWidgetsMap = new HashMap<>();
+        for (PDField field : fields) {
+            for (PDAnnotationWidget widget : field.getWidgets()) {
+                PDPage page = fieldIndex.getPage(widget);
+                if (page != null)
+                    pagesWidgetsMap.computeIfAbsent(page.getCOSObject(), p -> new HashSet<>()).add(widget.getCOSObject());
+            }
+        }
+        return pagesWidgetsMap;
+    }
+
+    /**
+     * Returns the <b>Resources</b> dictionaries, <b>XObject</b> sub-dictionaries,
+     * and <b>Contents</b> arrays referenced by more than one page.
+     */
+    static Set<COSBase> findSharedObjects(List<PDPage> pages) {
+        Map<COSBase, Boolean> seen = new IdentityHashMap<>();
+        Set<COSBase> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (PDPage page : pages) {
+            for (COSBase object : pageOwnedObjects(page)) {
+                if (seen.put(object, Boolean.TRUE) != null)
+                    shared.add(object);
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * A page can be processed concurrently only if it has its own <b>Resources</b>
+     * entry and none of the objects flattening changes is shared.
+     */
+    static boolean isShared(PDPage page, Set<COSBase> shared) {
+        if (!(page.getCOSObject().getDictionaryObject(COSName.RESOURCES) instanceof COSDictionary))
+            return true;
+        for (COSBase object : pageOwnedObjects(page)) {
+            if (shared.contains(object))
+                return true;
+        }
+        return false;
+    }
+
+    static List<COSBase> pageOwnedObjects(PDPage page) {
+        List<COSBase> objects = new ArrayList<>();
+        COSBase resources = page.getCOSObject().getDictionaryObject(COSName.RESOURCES);
+        if (resources instanceof COSDictionary) {
+            objects.add(resources);
+            COSBase xobjects = ((COSDictionary) resources).getDictionaryObject(COSName.XOBJECT);
+            if (xobjects instanceof COSDictionary)
+                objects.add(xobjects);
+        }
+        COSBase contents = page.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+        if (contents instanceof COSArray)
+            objects.add(contents);
+        return objects;
+    }
+
+    /**
+     * Removes the given fields from the <b>Fields</b> or parent <b>Kids</b> arrays.
+     */
+    static void removeFields(PDAcroForm acroForm, List<PDField> fields) {
+        for (PDField field : fields) {
+            COSArray array;
+            if (field.getParent() == null)
+                array = (COSArray) acroForm.getCOSObject().getDictionaryObject(COSName.FIELDS);
+            else
+                array = (COSArray) field.getParent().getCOSObject().getDictionaryObject(COSName.KIDS);
+            if (array != null)
+                array.removeObject(field.getCOSObject());
+        }
+    }
+
+    int parallelism = Runtime.getRuntime().availableProcessors();
+}
@@ -0,0 +1,135 @@
+package mkl.testarea.pdfbox2.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * <p>
+ * This class opens and creates documents for the tools in this test area
+ * with a common, configurable memory policy, so that large files are
+ * handled consistently:
+ * </p>
+ * <ul>
+ * <li>The {@link MemoryUsageSetting} determines where PDFBox buffers
+ * decoded and newly created streams: in main memory only (the PDFBox
+ * default), in main memory up to a limit and beyond that in a temporary
+ * file, or in a temporary file only.
+ * <li>If memory mapping is switched on, files are read via a memory-mapped
+ * {@link RandomAccessRead} instead of a buffered file input stream, so the
+ * operating system pages in the original file contents on demand outside
+ * the Java heap.
+ * </ul>
+ * <p>
+ * Instances are immutable and can be shared, also by threads running in
+ * parallel; each document gets its own scratch file.
+ * </p>
+ *
+ * @author mkl
+ */
+public class DocumentLoader
+{
+    /**
+     * Loads like {@link PDDocument#load(File)} does: main memory only, no memory mapping.
+     */
+    public final static DocumentLoader DEFAULT = new DocumentLoader(MemoryUsageSetting.setupMainMemoryOnly(), false);
+
+    /**
+     * Buffers in main memory up to the given number of bytes per document and
+     * in a temporary file in the given directory (or the default temporary
+     * directory if <code>null</code>) beyond. Input files are memory-mapped.
+     */
+    public static DocumentLoader mixed(long maxMainMemoryBytes, File tempDir)
+    {
+        return new DocumentLoader(MemoryUsageSetting.setupMixed(maxMainMemoryBytes).setTempDir(tempDir), true);
+    }
+
+    /**
+     * Buffers in a temporary file in the given directory (or the default
+     * temporary directory if <code>null</code>) only. Input files are
+     * memory-mapped.
+     */
+    public static DocumentLoader tempFileOnly(File tempDir)
+    {
+        return new DocumentLoader(MemoryUsageSetting.setupTempFileOnly().setTempDir(tempDir), true);
+    }
+
+    public DocumentLoader(MemoryUsageSetting memoryUsageSetting, boolean memoryMapped)
+    {
+        if (memoryUsageSetting == null)
+            throw new IllegalArgumentException("A memory usage setting is required.");
+        this.memoryUsageSetting = memoryUsageSetting;
+        this.memoryMapped = memoryMapped;
+    }
+
+    public MemoryUsageSetting getMemoryUsageSetting()
+    {
+        return memoryUsageSetting;
+    }
+
+    public boolean isMemoryMapped()
+    {
+        return memoryMapped;
+    }
+
+    public PDDocument load(File file) throws IOException
+    {
+        return load(file, "");
+    }
+
+    public PDDocument load(File file, String password) throws IOException
+    {
+        if (!memoryMapped)
+            return PDDocument.load(file, password, memoryUsageSetting);
+
+        RandomAccessRead source = new MappedRandomAccessRead(file);
+        ScratchFile scratchFile = null;
+        try
+        {
+            scratchFile = new ScratchFile(memoryUsageSetting);
+            PDFParser parser = new PDFParser(source, password, null, null, scratchFile);
+            parser.parse();
+            // the document closes the source and the scratch file when it is closed
+            return parser.getPDDocument();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            IOUtils.closeQuietly(scratchFile);
+            IOUtils.closeQuietly(source);
+            throw e;
+        }
+    }
+
+    /**
+     * Loads a document from a stream. The stream is copied into the scratch
+     * file first, so with a mixed or temporary file memory usage setting
+     * heap usage remains bounded. The stream is not closed.
+     */
+    public PDDocument load(InputStream input) throws IOException
+    {
+        return PDDocument.load(input, memoryUsageSetting);
+    }
+
+    public PDDocument load(InputStream input, String password) throws IOException
+    {
+        return PDDocument.load(input, password, memoryUsageSetting);
+    }
+
+    /**
+     * Creates a new, empty document buffering according to the memory usage setting.
+     */
+    public PDDocument createDocument()
+    {
+        return new PDDocument(memoryUsageSetting);
+    }
+
+    final MemoryUsageSetting memoryUsageSetting;
+    final boolean memoryMapped;
+}
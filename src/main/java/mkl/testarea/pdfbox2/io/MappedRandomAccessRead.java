@@ -0,0 +1,175 @@
+package mkl.testarea.pdfbox2.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+
+/**
+ * <p>
+ * A {@link RandomAccessRead} reading a file via memory mapping. The file is
+ * mapped in chunks of 1 GB as a single {@link MappedByteBuffer} cannot exceed
+ * 2 GB. The file contents thus are paged in by the operating system on demand
+ * and do not count against the Java heap.
+ * </p>
+ * <p>
+ * Java offers no way to explicitly unmap a buffer; the mapping is released when
+ * the buffers are garbage collected after {@link #close()}. On Windows the file
+ * cannot be deleted or replaced before that.
+ * </p>
+ * <p>
+ * Instances are not thread-safe, just like the other {@link RandomAccessRead}
+ * implementations.
+ * </p>
+ *
+ * @author mkl
+ */
+class MappedRandomAccessRead implements RandomAccessRead
+{
+    MappedRandomAccessRead(File file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            length = channel.size();
+            int count = (int) ((length + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+            chunks = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++)
+            {
+                long start = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, length - start));
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        checkClosed();
+        if (position >= length)
+            return -1;
+        int b = chunks[(int) (position >>> CHUNK_BITS)].get((int) (position & CHUNK_MASK)) & 0xff;
+        position++;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException
+    {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int length) throws IOException
+    {
+        checkClosed();
+        if (length == 0)
+            return 0;
+        if (position >= this.length)
+            return -1;
+        int total = (int) Math.min(length, this.length - position);
+        int done = 0;
+        while (done < total)
+        {
+            MappedByteBuffer chunk = chunks[(int) (position >>> CHUNK_BITS)];
+            int chunkOffset = (int) (position & CHUNK_MASK);
+            int count = Math.min(total - done, chunk.limit() - chunkOffset);
+            chunk.position(chunkOffset);
+            chunk.get(b, offset + done, count);
+            done += count;
+            position += count;
+        }
+        return total;
+    }
+
+    @Override
+    public long getPosition() throws IOException
+    {
+        checkClosed();
+        return position;
+    }
+
+    @Override
+    public void seek(long position) throws IOException
+    {
+        checkClosed();
+        if (position < 0)
+            throw new IOException("Invalid position " + position);
+        this.position = position;
+    }
+
+    @Override
+    public long length() throws IOException
+    {
+        checkClosed();
+        return length;
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return chunks == null;
+    }
+
+    @Override
+    public int peek() throws IOException
+    {
+        int result = read();
+        if (result != -1)
+            position--;
+        return result;
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException
+    {
+        seek(getPosition() - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int length) throws IOException
+    {
+        byte[] result = new byte[length];
+        int read = read(result, 0, length);
+        if (read < length)
+            throw new EOFException();
+        return result;
+    }
+
+    @Override
+    public boolean isEOF() throws IOException
+    {
+        return peek() == -1;
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        checkClosed();
+        return (int) Math.max(0, Math.min(length - position, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        chunks = null;
+    }
+
+    void checkClosed() throws IOException
+    {
+        if (chunks == null)
+            throw new IOException("MappedRandomAccessRead already closed");
+    }
+
+    final static int CHUNK_BITS = 30;
+    final static long CHUNK_SIZE = 1L << CHUNK_BITS;
+    final static long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    final long length;
+    MappedByteBuffer[] chunks;
+    long position = 0;
+}
@@ -1,7 +1,9 @@
 package mkl.testarea.pdfbox2.merge;
 
 import java.awt.geom.Rectangle2D;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 
 import org.apache.pdfbox.multipdf.LayerUtility;
@@ -13,6 +15,7 @@ import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.util.Matrix;
 
 import mkl.testarea.pdfbox2.extract.BoundingBoxFinder;
+import mkl.testarea.pdfbox2.io.DocumentLoader;
 
 /**
  * <a href="https://stackoverflow.com/questions/54283827/pdf-files-merge-remove-blank-at-end-of-page-i-am-using-pdfbox-v2-0-13-to-achi">
@@ -34,14 +37,73 @@ public class PdfDenseMergeTool {
         this.gap = gap;
     }
 
+    /**
+     * Sets the {@link DocumentLoader} whose memory usage setting the merge
+     * result document uses; by default {@link DocumentLoader#DEFAULT} is used.
+     */
+    public void setDocumentLoader(DocumentLoader documentLoader)
+    {
+        this.documentLoader = documentLoader != null ? documentLoader : DocumentLoader.DEFAULT;
+    }
+
+    /**
+     * Supplies the input stream of a PDF to merge; it is retrieved only when
+     * its turn has come.
+     */
+    public interface InputStreamSupplier
+    {
+        InputStream get() throws IOException;
+    }
+
     public void merge(OutputStream outputStream, Iterable<PDDocument> inputs) throws IOException
+    {
+        merge(outputStream, inputs, input -> input, false);
+    }
+
+    /**
+     * Merges the given PDF files. Each file is opened using the {@link DocumentLoader}
+     * only when its turn has come and is closed right after its pages have been
+     * imported, so at most one input is open at any time.
+     */
+    public void mergeFiles(OutputStream outputStream, Iterable<File> inputs) throws IOException
+    {
+        merge(outputStream, inputs, documentLoader::load, true);
+    }
+
+    /**
+     * Merges the PDFs from the given input stream suppliers. Each stream is retrieved,
+     * loaded using the {@link DocumentLoader}, and closed only when its turn has come,
+     * and the document is closed right after its pages have been imported, so at most
+     * one input is open at any time.
+     */
+    public void mergeStreams(OutputStream outputStream, Iterable<InputStreamSupplier> inputs) throws IOException
+    {
+        merge(outputStream, inputs, supplier -> {
+            try (InputStream inputStream = supplier.get())
+            {
+                return documentLoader.load(inputStream);
+            }
+        }, true);
+    }
+
+    <T> void merge(OutputStream outputStream, Iterable<T> inputs, DocumentOpener<T> opener, boolean closeInputs) throws IOException
     {
         try
         {
             openDocument();
-            for (PDDocument input: inputs)
+            for (T input: inputs)
             {
-                merge(input);
+                PDDocument inputDocument = opener.open(input);
+                try
+                {
+                    merge(inputDocument);
+                }
+                finally
+                {
+                    // LayerUtility clones the imported objects, so the merge result does not depend on the input anymore
+                    if (closeInputs)
+                        inputDocument.close();
+                }
             }
             if (currentContents != null) {
                 currentContents.close();
@@ -58,7 +120,7 @@ public class PdfDenseMergeTool {
 
     void openDocument() throws IOException
     {
-        document = new PDDocument();
+        document = documentLoader.createDocument();
         newPage();
     }
 
@@ -128,6 +190,11 @@ public class PdfDenseMergeTool {
         currentContents.restoreGraphicsState();
     }
 
+    interface DocumentOpener<T>
+    {
+        PDDocument open(T input) throws IOException;
+    }
+
     PDDocument document = null;
     PDPage currentPage = null;
     PDPageContentStream currentContents = null;
@@ -137,4 +204,5 @@ public class PdfDenseMergeTool {
     final float topMargin;
     final float bottomMargin;
     final float gap;
+    DocumentLoader documentLoader = DocumentLoader.DEFAULT;
 }
@@ -12,6 +12,8 @@ import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.util.Matrix;
 
+import mkl.testarea.pdfbox2.io.DocumentLoader;
+
 /**
  * <a href="https://stackoverflow.com/questions/60052967/how-to-dense-merge-pdf-files-using-pdfbox-2-without-whitespace-near-page-breaks">
  * How to dense merge PDF files using PDFBox 2 without whitespace near page breaks?
@@ -32,6 +34,15 @@ public class PdfVeryDenseMergeTool {
         this.gap = gap;
     }
 
+    /**
+     * Sets the {@link DocumentLoader} whose memory usage setting the merge
+     * result document uses; by default {@link DocumentLoader#DEFAULT} is used.
+     */
+    public void setDocumentLoader(DocumentLoader documentLoader)
+    {
+        this.documentLoader = documentLoader != null ? documentLoader : DocumentLoader.DEFAULT;
+    }
+
     public void merge(OutputStream outputStream, Iterable<PDDocument> inputs) throws IOException
     {
         try
@@ -56,7 +67,7 @@ public class PdfVeryDenseMergeTool {
 
     void openDocument() throws IOException
     {
-        document = new PDDocument();
+        document = documentLoader.createDocument();
         newPage();
     }
 
@@ -151,4 +162,5 @@ public class PdfVeryDenseMergeTool {
     final float topMargin;
     final float bottomMargin;
     final float gap;
+    DocumentLoader documentLoader = DocumentLoader.DEFAULT;
 }
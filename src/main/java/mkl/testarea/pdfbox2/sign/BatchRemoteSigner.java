@@ -0,0 +1,298 @@
+package mkl.testarea.pdfbox2.sign;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pdfbox.examples.signature.TSAClient;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.ExternalSigningSupport;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureOptions;
+import org.apache.pdfbox.util.Hex;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.OperatorCreationException;
+
+import mkl.testarea.pdfbox2.io.DocumentLoader;
+
+/**
+ * <p>
+ * This class signs batches of documents with a remote signing service
+ * in two phases, requiring only a single round trip to the service per
+ * batch instead of one per document:
+ * </p>
+ * <ol>
+ * <li>Each document is prepared: it is saved with a signature placeholder
+ * (like in the late external signing scenario of {@link VisibleSignature}),
+ * the message digest of its byte ranges is calculated, and the signed
+ * attributes of a {@link PadesSignatureContainerBc} container for this
+ * digest are built and hashed.
+ * <li>The hashes of all documents are signed by the {@link HashSigner}
+ * in one call.
+ * <li>For each document the signature container is built with the returned
+ * signature and written into the placeholder using a positional
+ * {@link FileChannel} write.
+ * </ol>
+ * <p>
+ * This works because the signed attributes generated by the
+ * {@link PadesSignatureContainerBc} only depend on the signer certificate
+ * and the message digest, so building them twice gives the same result.
+ * </p>
+ *
+ * @author mkl
+ */
+public class BatchRemoteSigner {
+    /**
+     * The remote signing service, e.g. a client of a CSC API <code>signatures/signHash</code>
+     * endpoint, or a local stand-in.
+     */
+    public interface HashSigner {
+        /**
+         * Signs the given hashes and returns the signature values in the same order.
+         */
+        List<byte[]> signHashes(List<byte[]> hashes) throws IOException;
+    }
+
+    /**
+     * A document prepared for signing in phase one.
+     */
+    public static class PreparedSignature {
+        PreparedSignature(File file, int[] byteRange, byte[] documentDigest, byte[] hashToSign) {
+            this.file = file;
+            this.byteRange = byteRange;
+            this.documentDigest = documentDigest;
+            this.hashToSign = hashToSign;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public int[] getByteRange() {
+            return byteRange.clone();
+        }
+
+        public byte[] getDocumentDigest() {
+            return documentDigest.clone();
+        }
+
+        /**
+         * The hash of the signed attributes which the remote service has to sign.
+         */
+        public byte[] getHashToSign() {
+            return hashToSign.clone();
+        }
+
+        final File file;
+        final int[] byteRange;
+        final byte[] documentDigest;
+        final byte[] hashToSign;
+    }
+
+    /**
+     * @param signatureAlgorithm the algorithm of the signatures the {@link HashSigner} returns.
+     * @param tsaClient optional, if present, signature time stamps are added in phase two.
+     */
+    public BatchRemoteSigner(X509CertificateHolder certificate, AlgorithmIdentifier signatureAlgorithm, HashSigner hashSigner, TSAClient tsaClient) {
+        this.certificate = certificate;
+        this.signatureAlgorithm = signatureAlgorithm;
+        this.hashSigner = hashSigner;
+        this.tsaClient = tsaClient;
+    }
+
+    public void setDocumentLoader(DocumentLoader documentLoader) {
+        this.documentLoader = documentLoader != null ? documentLoader : DocumentLoader.DEFAULT;
+    }
+
+    /**
+     * Sets the size in bytes reserved for the signature container; the
+     * default is the PDFBox default of 0x2500 bytes.
+     */
+    public void setSignatureSize(int signatureSize) {
+        this.signatureSize = signatureSize;
+    }
+
+    /**
+     * Signs the documents in the given source files into the respective target
+     * files, calling the {@link HashSigner} once for all of them.
+     */
+    public void sign(Map<File, File> files) throws IOException {
+        List<PreparedSignature> preparedSignatures = new ArrayList<>();
+        for (Map.Entry<File, File> entry : files.entrySet()) {
+            preparedSignatures.add(prepare(entry.getKey(), entry.getValue()));
+        }
+        complete(preparedSignatures);
+    }
+
+    /**
+     * Phase one: saves the document from the source file with a signature
+     * placeholder into the target file and determines the hash to sign.
+     */
+    public PreparedSignature prepare(File source, File target) throws IOException {
+        CapturingContentSigner capturingSigner = new CapturingContentSigner(signatureAlgorithm);
+        PadesSignatureContainerBc container = createContainer(capturingSigner, null);
+
+        byte[] documentDigest;
+        int[] byteRange;
+        try (   PDDocument document = documentLoader.load(source);
+                OutputStream result = new FileOutputStream(target);
+                SignatureOptions signatureOptions = new SignatureOptions()   ) {
+            PDSignature signature = new PDSignature();
+            signature.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
+            signature.setSubFilter(PDSignature.SUBFILTER_ETSI_CADES_DETACHED);
+            signature.setSignDate(Calendar.getInstance());
+
+            signatureOptions.setPreferredSignatureSize(signatureSize);
+            document.addSignature(signature, signatureOptions);
+
+            ExternalSigningSupport externalSigning = document.saveIncrementalForExternalSigning(result);
+            documentDigest = container.digest(externalSigning.getContent());
+            // this saves the file with a 0 signature
+            externalSigning.setSignature(new byte[0]);
+            byteRange = signature.getByteRange();
+        }
+
+        // building the container with the capturing signer reveals the signed attributes
+        container.signDigest(documentDigest);
+        MessageDigest messageDigest = container.createMessageDigest();
+        byte[] hashToSign = messageDigest.digest(capturingSigner.signedAttributes.toByteArray());
+
+        return new PreparedSignature(target, byteRange, documentDigest, hashToSign);
+    }
+
+    /**
+     * Phase two: has all hashes signed in one call and injects the signature
+     * containers into the prepared files.
+     */
+    public void complete(List<PreparedSignature> preparedSignatures) throws IOException {
+        List<byte[]> hashes = new ArrayList<>(preparedSignatures.size());
+        for (PreparedSignature preparedSignature : preparedSignatures) {
+            hashes.add(preparedSignature.hashToSign);
+        }
+
+        List<byte[]> signatures = hashSigner.signHashes(hashes);
+        if (signatures == null || signatures.size() != hashes.size())
+            throw new IOException(String.format("Hash signer returned %s signatures for %d hashes.", signatures == null ? "no" : signatures.size(), hashes.size()));
+
+        for (int i = 0; i < preparedSignatures.size(); i++) {
+            complete(preparedSignatures.get(i), signatures.get(i));
+        }
+    }
+
+    /**
+     * Phase two for a single document: builds the signature container with the
+     * given signature value of its hash and injects it into the prepared file.
+     * The file is not parsed again.
+     */
+    public void complete(PreparedSignature preparedSignature, byte[] signatureValue) throws IOException {
+        byte[] cmsSignature = createContainer(new FixedContentSigner(signatureAlgorithm, signatureValue), tsaClient)
+                .signDigest(preparedSignature.documentDigest);
+        inject(preparedSignature.file, preparedSignature.byteRange, cmsSignature);
+    }
+
+    //
+    // helper methods
+    //
+    PadesSignatureContainerBc createContainer(ContentSigner contentSigner, TSAClient tsaClient) throws IOException {
+        try {
+            return new PadesSignatureContainerBc(certificate, contentSigner, tsaClient);
+        } catch (OperatorCreationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Writes the given signature container as hex string into the
+     * placeholder between the byte ranges of the given file.
+     */
+    static void inject(File file, int[] byteRange, byte[] cmsSignature) throws IOException {
+        byte[] hex = Hex.getBytes(cmsSignature);
+        // the placeholder is enclosed in '<' and '>'
+        long offset = byteRange[1] + 1;
+        int available = byteRange[2] - byteRange[1] - 2;
+        if (hex.length > available)
+            throw new IOException(String.format("Signature container of %d bytes exceeds the placeholder of %d bytes.", cmsSignature.length, available / 2));
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(hex);
+            while (buffer.hasRemaining()) {
+                offset += channel.write(buffer, offset);
+            }
+        }
+    }
+
+    /**
+     * Captures the data to sign, i.e. the DER encoded signed attributes,
+     * and returns an empty signature.
+     */
+    static class CapturingContentSigner implements ContentSigner {
+        CapturingContentSigner(AlgorithmIdentifier algorithmIdentifier) {
+            this.algorithmIdentifier = algorithmIdentifier;
+        }
+
+        @Override
+        public AlgorithmIdentifier getAlgorithmIdentifier() {
+            return algorithmIdentifier;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return signedAttributes;
+        }
+
+        @Override
+        public byte[] getSignature() {
+            return new byte[0];
+        }
+
+        final AlgorithmIdentifier algorithmIdentifier;
+        final ByteArrayOutputStream signedAttributes = new ByteArrayOutputStream();
+    }
+
+    /**
+     * Returns a signature value retrieved beforehand.
+     */
+    static class FixedContentSigner implements ContentSigner {
+        FixedContentSigner(AlgorithmIdentifier algorithmIdentifier, byte[] signature) {
+            this.algorithmIdentifier = algorithmIdentifier;
+            this.signature = signature;
+        }
+
+        @Override
+        public AlgorithmIdentifier getAlgorithmIdentifier() {
+            return algorithmIdentifier;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public byte[] getSignature() {
+            return signature;
+        }
+
+        final AlgorithmIdentifier algorithmIdentifier;
+        final byte[] signature;
+    }
+
+    final X509CertificateHolder certificate;
+    final AlgorithmIdentifier signatureAlgorithm;
+    final HashSigner hashSigner;
+    final TSAClient tsaClient;
+    DocumentLoader documentLoader = DocumentLoader.DEFAULT;
+    int signatureSize = SignatureOptions.DEFAULT_SIGNATURE_SIZE;
+}
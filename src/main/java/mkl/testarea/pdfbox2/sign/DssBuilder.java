@@ -0,0 +1,322 @@
+package mkl.testarea.pdfbox2.sign;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSUpdateInfo;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.util.Hex;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+
+import mkl.testarea.pdfbox2.io.DocumentLoader;
+import mkl.testarea.pdfbox2.sign.ValidationDataCache.Type;
+
+/**
+ * <p>
+ * This class adds a DSS (document security store) with VRI entries for
+ * all signatures of a document, like the <code>AddValidationInformation</code>
+ * example used in the <code>AddVri</code> test does, but built for LTV enabling
+ * many documents signed by the same few CAs:
+ * </p>
+ * <ul>
+ * <li>Issuer certificates missing in the signature containers, OCSP responses,
+ * and CRLs are retrieved through a {@link ValidationDataCache}, so they are
+ * fetched from the {@link ValidationDataSource} only once per time to live,
+ * not once per document.
+ * <li>Each distinct certificate, OCSP response, and CRL is written once per
+ * document as a single stream object, referenced from the DSS arrays and from
+ * every VRI entry needing it. Streams already in an existing DSS are re-used.
+ * </ul>
+ * <p>
+ * For each certificate of a signer certificate chain but the root an OCSP
+ * response is requested; only if there is none, a CRL is. OCSP responses and
+ * issuer certificates are cached per certificate, CRLs per issuer. Missing data
+ * is cached, too; in particular, if an issuer provides no OCSP response, it is
+ * not asked for OCSP responses for other certificates within the time to live,
+ * so CAs publishing only CRLs cost no OCSP round trips per document.
+ * Instances can be shared by threads processing different documents if the
+ * {@link ValidationDataSource} is thread-safe.
+ * </p>
+ *
+ * @author mkl
+ */
+public class DssBuilder {
+    /**
+     * The origin of validation data not in the cache, e.g. AIA, OCSP, and CRL
+     * distribution point clients, or a local stand-in. Each method may return
+     * <code>null</code> if there is no such data.
+     */
+    public interface ValidationDataSource {
+        /**
+         * Returns the DER encoded issuer certificate of the given certificate.
+         */
+        byte[] fetchIssuerCertificate(X509CertificateHolder certificate) throws IOException;
+
+        /**
+         * Returns a DER encoded OCSP response for the given certificate.
+         */
+        byte[] fetchOcspResponse(X509CertificateHolder certificate, X509CertificateHolder issuer) throws IOException;
+
+        /**
+         * Returns a DER encoded CRL of the given issuer covering the given certificate.
+         */
+        byte[] fetchCrl(X509CertificateHolder certificate, X509CertificateHolder issuer) throws IOException;
+    }
+
+    public DssBuilder(ValidationDataSource source, ValidationDataCache cache) {
+        if (source == null || cache == null)
+            throw new IllegalArgumentException("A validation data source and a cache are required.");
+        this.source = source;
+        this.cache = cache;
+    }
+
+    public void setDocumentLoader(DocumentLoader documentLoader) {
+        this.documentLoader = documentLoader != null ? documentLoader : DocumentLoader.DEFAULT;
+    }
+
+    /**
+     * Adds the validation data for the signatures of the document in the input
+     * file and saves the result as incremental update into the output file
+     * which must differ from the input file.
+     */
+    public void addValidationData(File inputFile, File outputFile) throws IOException {
+        if (inputFile.getCanonicalFile().equals(outputFile.getCanonicalFile()))
+            throw new IllegalArgumentException("Input and output file must differ: " + inputFile);
+        try (   PDDocument document = documentLoader.load(inputFile);
+                OutputStream result = new FileOutputStream(outputFile)   ) {
+            addValidationData(document);
+            document.saveIncremental(result);
+        }
+    }
+
+    /**
+     * Adds the validation data for the signatures of the given document
+     * which then has to be saved incrementally. Signatures with an existing
+     * VRI entry are skipped.
+     */
+    public void addValidationData(PDDocument document) throws IOException {
+        List<PDSignature> signatures = document.getSignatureDictionaries();
+        if (signatures.isEmpty())
+            return;
+
+        COSDictionary catalog = document.getDocumentCatalog().getCOSObject();
+        catalog.setNeedToBeUpdated(true);
+        addExtensions(catalog);
+        COSDictionary dss = getOrCreate(catalog, COSName.getPDFName("DSS"), COSDictionary.class);
+        COSDictionary vri = getOrCreate(dss, COSName.getPDFName("VRI"), COSDictionary.class);
+        DocumentStreams streams = new DocumentStreams(document,
+                getOrCreate(dss, COSName.getPDFName("Certs"), COSArray.class),
+                getOrCreate(dss, COSName.getPDFName("OCSPs"), COSArray.class),
+                getOrCreate(dss, COSName.getPDFName("CRLs"), COSArray.class));
+
+        for (PDSignature signature : signatures) {
+            byte[] contents = signature.getContents();
+            if (contents == null || contents.length == 0)
+                continue;
+            COSName vriKey = COSName.getPDFName(Hex.getString(sha1(contents)));
+            if (vri.containsKey(vriKey))
+                continue;
+
+            List<X509CertificateHolder> chain = buildChain(contents);
+            COSArray vriCerts = new COSArray();
+            COSArray vriOcsps = new COSArray();
+            COSArray vriCrls = new COSArray();
+            for (int i = 0; i < chain.size(); i++) {
+                X509CertificateHolder certificate = chain.get(i);
+                vriCerts.add(streams.get(Type.CERTIFICATE, certificate.getEncoded()));
+                if (i + 1 == chain.size())
+                    break;
+
+                X509CertificateHolder issuer = chain.get(i + 1);
+                String noOcspKey = "no-ocsp:" + ValidationDataCache.hash(issuer.getEncoded());
+                byte[] ocsp = null;
+                if (!cache.isMissing(Type.OCSP, noOcspKey)) {
+                    ocsp = cache.getOrFetch(Type.OCSP, ValidationDataCache.hash(certificate.getEncoded()),
+                            () -> source.fetchOcspResponse(certificate, issuer));
+                    if (ocsp == null)
+                        cache.putMissing(Type.OCSP, noOcspKey);
+                }
+                if (ocsp != null) {
+                    vriOcsps.add(streams.get(Type.OCSP, ocsp));
+                    continue;
+                }
+                byte[] crl = cache.getOrFetch(Type.CRL, ValidationDataCache.hash(issuer.getEncoded()),
+                        () -> source.fetchCrl(certificate, issuer));
+                if (crl != null)
+                    vriCrls.add(streams.get(Type.CRL, crl));
+            }
+
+            COSDictionary entry = new COSDictionary();
+            if (vriCerts.size() > 0)
+                entry.setItem(COSName.getPDFName("Cert"), vriCerts);
+            if (vriOcsps.size() > 0)
+                entry.setItem(COSName.getPDFName("OCSP"), vriOcsps);
+            if (vriCrls.size() > 0)
+                entry.setItem(COSName.getPDFName("CRL"), vriCrls);
+            entry.setDate(COSName.getPDFName("TU"), Calendar.getInstance());
+            vri.setItem(vriKey, entry);
+        }
+    }
+
+    //
+    // helper methods
+    //
+    /**
+     * Returns the signer certificate of the given signature container followed
+     * by its issuer certificates, taken from the container if possible and
+     * retrieved via the cache otherwise.
+     */
+    List<X509CertificateHolder> buildChain(byte[] contents) throws IOException {
+        CMSSignedData cms;
+        try {
+            cms = new CMSSignedData(contents);
+        } catch (CMSException e) {
+            throw new IOException("Unparseable signature container", e);
+        }
+        @SuppressWarnings("unchecked")
+        Collection<X509CertificateHolder> certificates = cms.getCertificates().getMatches(null);
+        List<X509CertificateHolder> chain = new ArrayList<>();
+        Collection<SignerInformation> signers = cms.getSignerInfos().getSigners();
+        if (signers.isEmpty())
+            return chain;
+        @SuppressWarnings("unchecked")
+        Collection<X509CertificateHolder> matches = cms.getCertificates().getMatches(signers.iterator().next().getSID());
+        if (matches.isEmpty())
+            return chain;
+
+        X509CertificateHolder certificate = matches.iterator().next();
+        chain.add(certificate);
+        while (!certificate.getSubject().equals(certificate.getIssuer()) && chain.size() < MAX_CHAIN_LENGTH) {
+            X509CertificateHolder issuer = null;
+            for (X509CertificateHolder candidate : certificates) {
+                if (candidate.getSubject().equals(certificate.getIssuer())) {
+                    issuer = candidate;
+                    break;
+                }
+            }
+            if (issuer == null) {
+                X509CertificateHolder issued = certificate;
+                byte[] encoded = cache.getOrFetch(Type.CERTIFICATE, "issuer:" + ValidationDataCache.hash(issued.getEncoded()),
+                        () -> source.fetchIssuerCertificate(issued));
+                if (encoded == null)
+                    break;
+                issuer = new X509CertificateHolder(encoded);
+            }
+            chain.add(issuer);
+            certificate = issuer;
+        }
+        return chain;
+    }
+
+    static void addExtensions(COSDictionary catalog) {
+        COSDictionary extensions = getOrCreate(catalog, COSName.getPDFName("Extensions"), COSDictionary.class);
+        if (!extensions.containsKey(COSName.getPDFName("ESIC"))) {
+            COSDictionary esic = new COSDictionary();
+            esic.setName(COSName.getPDFName("BaseVersion"), "1.7");
+            esic.setItem(COSName.getPDFName("ExtensionLevel"), COSInteger.get(5));
+            extensions.setItem(COSName.getPDFName("ESIC"), esic);
+        }
+    }
+
+    static <T extends COSBase> T getOrCreate(COSDictionary parent, COSName name, Class<T> type) {
+        COSBase element = parent.getDictionaryObject(name);
+        T result;
+        if (type.isInstance(element)) {
+            result = type.cast(element);
+        } else {
+            try {
+                result = type.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException(e);
+            }
+            result.setDirect(false);
+            parent.setItem(name, result);
+        }
+        if (result instanceof COSUpdateInfo)
+            ((COSUpdateInfo) result).setNeedToBeUpdated(true);
+        return result;
+    }
+
+    static byte[] sha1(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The streams of the distinct validation data blobs in a single document,
+     * indexed by content hash.
+     */
+    static class DocumentStreams {
+        DocumentStreams(PDDocument document, COSArray certs, COSArray ocsps, COSArray crls) throws IOException {
+            this.document = document;
+            arrays.put(Type.CERTIFICATE, certs);
+            arrays.put(Type.OCSP, ocsps);
+            arrays.put(Type.CRL, crls);
+            for (COSArray array : arrays.values()) {
+                for (int i = 0; i < array.size(); i++) {
+                    COSBase element = array.getObject(i);
+                    if (element instanceof COSStream) {
+                        try (InputStream data = ((COSStream) element).createInputStream()) {
+                            streams.putIfAbsent(ValidationDataCache.hash(IOUtils.toByteArray(data)), (COSStream) element);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the stream with the given data, creating it and adding
+         * it to the DSS array of the given type if it does not exist yet.
+         */
+        COSStream get(Type type, byte[] data) throws IOException {
+            String contentHash = ValidationDataCache.hash(data);
+            COSStream stream = streams.get(contentHash);
+            if (stream == null) {
+                stream = document.getDocument().createCOSStream();
+                try (OutputStream output = stream.createOutputStream(COSName.FLATE_DECODE)) {
+                    output.write(data);
+                }
+                stream.setNeedToBeUpdated(true);
+                arrays.get(type).add(stream);
+                streams.put(contentHash, stream);
+            }
+            return stream;
+        }
+
+        final PDDocument document;
+        final Map<Type, COSArray> arrays = new HashMap<>();
+        final Map<String, COSStream> streams = new HashMap<>();
+    }
+
+    final static int MAX_CHAIN_LENGTH = 16;
+
+    final ValidationDataSource source;
+    final ValidationDataCache cache;
+    DocumentLoader documentLoader = DocumentLoader.DEFAULT;
+}
@@ -4,11 +4,17 @@ import static org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers.id_aa_signatureTi
 import static org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers.id_aa_signingCertificate;
 import static org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers.id_aa_signingCertificateV2;
 
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.util.Collections;
 import java.util.Map;
 
@@ -28,7 +34,6 @@ import org.bouncycastle.asn1.ess.SigningCertificate;
 import org.bouncycastle.asn1.ess.SigningCertificateV2;
 import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
 import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
-import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.asn1.x509.GeneralName;
@@ -36,14 +41,15 @@ import org.bouncycastle.asn1.x509.GeneralNames;
 import org.bouncycastle.asn1.x509.IssuerSerial;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cms.CMSAbsentContent;
 import org.bouncycastle.cms.CMSAttributeTableGenerationException;
 import org.bouncycastle.cms.CMSAttributeTableGenerator;
 import org.bouncycastle.cms.CMSException;
 import org.bouncycastle.cms.CMSSignedData;
 import org.bouncycastle.cms.CMSSignedDataGenerator;
-import org.bouncycastle.cms.CMSTypedData;
 import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
 import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.DefaultDigestAlgorithmIdentifierFinder;
 import org.bouncycastle.operator.DigestCalculator;
 import org.bouncycastle.operator.DigestCalculatorProvider;
 import org.bouncycastle.operator.OperatorCreationException;
@@ -69,63 +75,159 @@ public class PadesSignatureContainerBc implements SignatureInterface {
         this.x509CertificateHolder = x509CertificateHolder;
 
         digestCalculatorProvider = new JcaDigestCalculatorProviderBuilder().setProvider("BC").build();
+        digestAlgorithm = new DefaultDigestAlgorithmIdentifierFinder().find(contentSigner.getAlgorithmIdentifier());
+    }
+
+    /**
+     * Sets the size of the buffers used to digest the signed content;
+     * the default is 1 MB.
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("Buffer size must be positive.");
+        this.bufferSize = bufferSize;
     }
 
     @Override
     public byte[] sign(InputStream content) throws IOException {
-        try {
-            CMSTypedData msg = new CMSTypedDataInputStream(content);
+        return signDigest(digest(content));
+    }
+
+    /**
+     * Signs the byte ranges of the given file, i.e. of a PDF prepared for
+     * signing and saved with a signature placeholder, e.g. in the late external
+     * signing scenario. The message digest is calculated by reading the ranges
+     * via a {@link FileChannel} into a direct buffer, so the signed content is
+     * neither copied into the heap nor ever held completely in memory.
+     *
+     * @param byteRange the <b>ByteRange</b> entry of the signature dictionary.
+     */
+    public byte[] sign(File file, int[] byteRange) throws IOException {
+        return signDigest(digest(file, byteRange));
+    }
+
+    /**
+     * Calculates the message digest of the given byte ranges of the given file,
+     * using the digest algorithm matching the content signer.
+     *
+     * @param byteRange the <b>ByteRange</b> entry of the signature dictionary.
+     */
+    public byte[] digest(File file, int[] byteRange) throws IOException {
+        if (byteRange == null || byteRange.length % 2 != 0)
+            throw new IllegalArgumentException("Byte range must consist of offset and length pairs.");
+        MessageDigest messageDigest = createMessageDigest();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int i = 0; i < byteRange.length; i += 2) {
+                long position = byteRange[i];
+                long end = position + byteRange[i + 1];
+                if (end > channel.size())
+                    throw new IOException(String.format("Byte range %d+%d exceeds file size %d.", byteRange[i], byteRange[i + 1], channel.size()));
+                while (position < end) {
+                    buffer.clear();
+                    if (end - position < buffer.capacity())
+                        buffer.limit((int) (end - position));
+                    int read = channel.read(buffer, position);
+                    if (read < 0)
+                        throw new EOFException();
+                    buffer.flip();
+                    messageDigest.update(buffer);
+                    position += read;
+                }
+            }
+        }
+        return messageDigest.digest();
+    }
 
+    /**
+     * Calculates the message digest of the given stream, using the digest
+     * algorithm matching the content signer. The stream is closed.
+     */
+    public byte[] digest(InputStream content) throws IOException {
+        MessageDigest messageDigest = createMessageDigest();
+        try (InputStream in = content) {
+            byte[] buffer = new byte[bufferSize];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, read);
+            }
+        }
+        return messageDigest.digest();
+    }
+
+    /**
+     * Creates the signature container for a message digest calculated by
+     * {@link #digest(File, int[])} or {@link #digest(InputStream)}. Only
+     * the digest enters the signed attributes, the content itself is not
+     * processed again.
+     */
+    public byte[] signDigest(byte[] digest) throws IOException {
+        try {
             CMSSignedDataGenerator gen = new CMSSignedDataGenerator();
 
             gen.addSignerInfoGenerator(
-                    new JcaSignerInfoGeneratorBuilder(digestCalculatorProvider)
+                    new JcaSignerInfoGeneratorBuilder(new PrecomputedDigestCalculatorProvider(digest))
                             .setSignedAttributeGenerator(new PadesSignedAttributeGenerator())
                             .setUnsignedAttributeGenerator(new PadesUnsignedAttributeGenerator())
                             .build(contentSigner, x509CertificateHolder));
 
             gen.addCertificates(new JcaCertStore(Collections.singleton(x509CertificateHolder)));
 
-            CMSSignedData sigData = gen.generate(msg, false);
+            CMSSignedData sigData = gen.generate(new CMSAbsentContent(), false);
             return sigData.getEncoded();
         } catch (OperatorCreationException | GeneralSecurityException | CMSException e) {
             throw new IOException(e);
         }
     }
 
+    MessageDigest createMessageDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance(digestAlgorithm.getAlgorithm().getId(), "BC");
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
     final ContentSigner contentSigner;
     final X509CertificateHolder x509CertificateHolder;
     final TSAClient tsaClient;
 
     final DigestCalculatorProvider digestCalculatorProvider;
+    final AlgorithmIdentifier digestAlgorithm;
+    int bufferSize = 1024 * 1024;
 
-    class CMSTypedDataInputStream implements CMSTypedData {
-        InputStream in;
-
-        public CMSTypedDataInputStream(InputStream is) {
-            in = is;
+    /**
+     * Returns digest calculators which ignore the content written to them
+     * and return a digest calculated beforehand.
+     */
+    class PrecomputedDigestCalculatorProvider implements DigestCalculatorProvider {
+        PrecomputedDigestCalculatorProvider(byte[] digest) {
+            this.digest = digest;
         }
 
         @Override
-        public ASN1ObjectIdentifier getContentType() {
-            return PKCSObjectIdentifiers.data;
-        }
+        public DigestCalculator get(AlgorithmIdentifier digestAlgorithmIdentifier) throws OperatorCreationException {
+            if (!digestAlgorithm.getAlgorithm().equals(digestAlgorithmIdentifier.getAlgorithm()))
+                throw new OperatorCreationException("Digest precomputed with " + digestAlgorithm.getAlgorithm() + ", not " + digestAlgorithmIdentifier.getAlgorithm());
+            return new DigestCalculator() {
+                @Override
+                public AlgorithmIdentifier getAlgorithmIdentifier() {
+                    return digestAlgorithmIdentifier;
+                }
 
-        @Override
-        public Object getContent() {
-            return in;
-        }
+                @Override
+                public OutputStream getOutputStream() {
+                    return OutputStream.nullOutputStream();
+                }
 
-        @Override
-        public void write(OutputStream out) throws IOException,
-                CMSException {
-            byte[] buffer = new byte[8 * 1024];
-            int read;
-            while ((read = in.read(buffer)) != -1) {
-                out.write(buffer, 0, read);
-            }
-            in.close();
+                @Override
+                public byte[] getDigest() {
+                    return digest.clone();
+                }
+            };
         }
+
+        final byte[] digest;
     }
 
     class PadesSignedAttributeGenerator implements CMSAttributeTableGenerator {
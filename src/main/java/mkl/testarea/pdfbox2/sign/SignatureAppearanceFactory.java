@@ -0,0 +1,222 @@
+package mkl.testarea.pdfbox2.sign;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.multipdf.LayerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceDictionary;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
+import org.apache.pdfbox.util.Matrix;
+
+/**
+ * <p>
+ * This class creates image-only signature widget appearances like the
+ * <code>addImageOnlySignatureField</code> and <code>addRotationAwareImageOnlySignatureField</code>
+ * methods of the <code>CreateMultipleVisualizations</code> test, but caches
+ * them instead of constructing each one from scratch:
+ * </p>
+ * <ul>
+ * <li>Each image (by SHA-256 hash of its bytes) is imported once into a
+ * private template document, so it is decoded and encoded only once per
+ * factory. For each combination of image, widget size, and page rotation a
+ * template page drawing that image XObject is created once.
+ * <li>For each target document a template is imported once as form XObject,
+ * copying the already encoded streams, and that form XObject is used as
+ * normal appearance of all widgets of that document with the same key.
+ * </ul>
+ * <p>
+ * Thus, a signature shown on every page of every document of a batch costs
+ * a single image stream per document and combination. The factory is thread-safe; it must be
+ * closed after use to release the template document.
+ * </p>
+ *
+ * @author mkl
+ */
+public class SignatureAppearanceFactory implements Closeable {
+    /**
+     * Returns the appearance form XObject in the given document showing the given
+     * image scaled to the given size and counter-rotated for the given page rotation.
+     */
+    public synchronized PDFormXObject getImageAppearance(PDDocument document, byte[] image, float width, float height, int rotation) throws IOException {
+        if (templateDocument == null)
+            throw new IllegalStateException("Factory already closed.");
+        Key key = new Key(ValidationDataCache.hash(image), width, height, ((rotation % 360) + 360) % 360);
+        Map<Key, PDFormXObject> documentForms = formsByDocument.computeIfAbsent(document, d -> new HashMap<>());
+        PDFormXObject form = documentForms.get(key);
+        if (form == null) {
+            PDPage templatePage = templates.get(key);
+            if (templatePage == null) {
+                templatePage = createTemplate(image, key);
+                templates.put(key, templatePage);
+            }
+            form = new LayerUtility(document).importPageAsForm(templateDocument, templatePage);
+            documentForms.put(key, form);
+        }
+        return form;
+    }
+
+    /**
+     * Adds a signature field for the given signature with a single widget on the
+     * given page in the given rectangle showing the given image, taking the page
+     * rotation into account. The widget shares its appearance with all other
+     * widgets of the document created by this factory with the same image, size,
+     * and rotation.
+     */
+    public PDSignatureField addImageSignatureField(PDDocument document, PDPage page, PDRectangle rectangle, PDSignature signature, byte[] image) throws IOException {
+        PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm();
+        if (acroForm == null)
+            throw new IllegalArgumentException("The document has no AcroForm.");
+        List<PDField> acroFormFields = acroForm.getFields();
+
+        PDSignatureField signatureField = new PDSignatureField(acroForm);
+        signatureField.setValue(signature);
+        PDAnnotationWidget widget = signatureField.getWidgets().get(0);
+        acroFormFields.add(signatureField);
+
+        widget.setRectangle(rectangle);
+        widget.setPage(page);
+
+        PDFormXObject form = getImageAppearance(document, image, rectangle.getWidth(), rectangle.getHeight(), page.getRotation());
+        PDAppearanceDictionary appearance = new PDAppearanceDictionary();
+        appearance.getCOSObject().setDirect(true);
+        appearance.setNormalAppearance(new PDAppearanceStream(form.getCOSObject()));
+        widget.setAppearance(appearance);
+
+        page.getAnnotations().add(widget);
+
+        COSDictionary pageTreeObject = page.getCOSObject();
+        while (pageTreeObject != null) {
+            pageTreeObject.setNeedToBeUpdated(true);
+            pageTreeObject = (COSDictionary) pageTreeObject.getDictionaryObject(COSName.PARENT);
+        }
+        return signatureField;
+    }
+
+    /**
+     * Returns the number of templates drawn so far.
+     */
+    public synchronized int getTemplateCount() {
+        return templates.size();
+    }
+
+    /**
+     * Returns the number of images imported so far.
+     */
+    public synchronized int getImageCount() {
+        return images.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        templates.clear();
+        images.clear();
+        formsByDocument.clear();
+        if (templateDocument != null) {
+            templateDocument.close();
+            templateDocument = null;
+        }
+    }
+
+    //
+    // helper methods
+    //
+    /**
+     * Draws the template for the given key on a new page of the template document,
+     * re-using the image XObject imported for an earlier template of the same image.
+     * The comment keeps Adobe Reader from having trouble with image-only appearances,
+     * see the <code>CreateMultipleVisualizations</code> test.
+     */
+    PDPage createTemplate(byte[] image, Key key) throws IOException {
+        PDPage page = new PDPage(new PDRectangle(key.width, key.height));
+        templateDocument.addPage(page);
+
+        Matrix matrix = new Matrix();
+        boolean switchLengths = false;
+        switch (key.rotation) {
+        case 90:
+            matrix.translate(key.width, 0);
+            matrix.rotate(Math.PI / 2);
+            switchLengths = true;
+            break;
+        case 180:
+            matrix.translate(key.width, key.height);
+            matrix.rotate(Math.PI);
+            break;
+        case 270:
+            matrix.translate(0, key.height);
+            matrix.rotate(-Math.PI / 2);
+            switchLengths = true;
+            break;
+        }
+
+        PDImageXObject pdImage = images.get(key.imageHash);
+        if (pdImage == null) {
+            pdImage = PDImageXObject.createFromByteArray(templateDocument, image, "signature");
+            images.put(key.imageHash, pdImage);
+        }
+
+        try (PDPageContentStream cs = new PDPageContentStream(templateDocument, page)) {
+            cs.transform(matrix);
+            cs.addComment("Signature appearance");
+            if (switchLengths)
+                cs.drawImage(pdImage, 0, 0, key.height, key.width);
+            else
+                cs.drawImage(pdImage, 0, 0, key.width, key.height);
+        }
+        return page;
+    }
+
+    /**
+     * The cache key of a template.
+     */
+    static class Key {
+        Key(String imageHash, float width, float height, int rotation) {
+            this.imageHash = imageHash;
+            this.width = width;
+            this.height = height;
+            this.rotation = rotation;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return imageHash.equals(other.imageHash) && Float.compare(width, other.width) == 0
+                    && Float.compare(height, other.height) == 0 && rotation == other.rotation;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(imageHash, width, height, rotation);
+        }
+
+        final String imageHash;
+        final float width;
+        final float height;
+        final int rotation;
+    }
+
+    PDDocument templateDocument = new PDDocument();
+    final Map<Key, PDPage> templates = new HashMap<>();
+    final Map<String, PDImageXObject> images = new HashMap<>();
+    final Map<PDDocument, Map<Key, PDFormXObject>> formsByDocument = new WeakHashMap<>();
+}
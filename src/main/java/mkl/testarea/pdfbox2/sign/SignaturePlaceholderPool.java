@@ -0,0 +1,195 @@
+package mkl.testarea.pdfbox2.sign;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mkl.testarea.pdfbox2.sign.BatchRemoteSigner.PreparedSignature;
+
+/**
+ * <p>
+ * This class manages a pool of documents prepared for signing ahead of
+ * demand, i.e. saved with a signature placeholder like in the late external
+ * signing scenario of {@link VisibleSignature}, using
+ * {@link BatchRemoteSigner#prepare(File, File)}.
+ * </p>
+ * <p>
+ * For each prepared document the byte range, the document digest, and the
+ * hash to sign are persisted in a small index file in the pool directory,
+ * so the pool survives restarts. Filling in a signature later only requires
+ * the index entry and a positional {@link FileChannel} write; the document
+ * is not parsed again. Filling in a ready-made signature container thus
+ * costs little more than the hex encoding and the write.
+ * </p>
+ * <p>
+ * The index is a text file with one line per event: <code>P</code> lines
+ * for prepared documents (id, file name, byte range, Base64 encoded document
+ * digest and hash to sign), <code>F</code> lines for filled ones (id).
+ * Documents may be prepared and filled concurrently; each document is
+ * filled at most once.
+ * </p>
+ *
+ * @author mkl
+ */
+public class SignaturePlaceholderPool {
+    public final static String INDEX_FILE_NAME = "placeholder-pool.idx";
+
+    /**
+     * @param directory the pool directory for the prepared documents and the index file;
+     *        if it already contains an index file, its pending entries are loaded.
+     * @param signer the signer preparing the documents and building signature
+     *        containers from signature values.
+     */
+    public SignaturePlaceholderPool(File directory, BatchRemoteSigner signer) throws IOException {
+        if (directory == null || signer == null)
+            throw new IllegalArgumentException("A pool directory and a signer are required.");
+        directory.mkdirs();
+        if (!directory.isDirectory())
+            throw new IllegalArgumentException("Not a directory: " + directory);
+        this.directory = directory;
+        this.signer = signer;
+        this.indexFile = new File(directory, INDEX_FILE_NAME);
+        loadIndex();
+    }
+
+    /**
+     * Prepares the document from the given source file into a new pool
+     * file and returns its id.
+     */
+    public String prepare(File source) throws IOException {
+        String id = UUID.randomUUID().toString();
+        PreparedSignature preparedSignature = signer.prepare(source, new File(directory, id + ".pdf"));
+        int[] byteRange = preparedSignature.byteRange;
+        appendToIndex(String.format("P %s %s %d,%d,%d,%d %s %s", id, preparedSignature.file.getName(),
+                byteRange[0], byteRange[1], byteRange[2], byteRange[3],
+                BASE64_ENCODER.encodeToString(preparedSignature.documentDigest),
+                BASE64_ENCODER.encodeToString(preparedSignature.hashToSign)));
+        pending.put(id, preparedSignature);
+        return id;
+    }
+
+    /**
+     * Prepares the documents from the given source files and returns their ids in the same order.
+     */
+    public List<String> prepareAll(Iterable<File> sources) throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (File source : sources)
+            ids.add(prepare(source));
+        return ids;
+    }
+
+    /**
+     * Returns the ids of the prepared documents not filled yet.
+     */
+    public Collection<String> getPendingIds() {
+        return Collections.unmodifiableSet(pending.keySet());
+    }
+
+    /**
+     * Returns the pending prepared document with the given id, or <code>null</code>
+     * if there is none.
+     */
+    public PreparedSignature get(String id) {
+        return pending.get(id);
+    }
+
+    /**
+     * Builds the signature container with the given signature value of the hash
+     * to sign of the document with the given id and fills it in.
+     *
+     * @return the signed file.
+     */
+    public File fill(String id, byte[] signatureValue) throws IOException {
+        PreparedSignature preparedSignature = take(id);
+        try {
+            signer.complete(preparedSignature, signatureValue);
+        } catch (IOException | RuntimeException e) {
+            pending.put(id, preparedSignature);
+            throw e;
+        }
+        appendToIndex("F " + id);
+        return preparedSignature.file;
+    }
+
+    /**
+     * Fills the given signature container for the document digest of the
+     * document with the given id in.
+     *
+     * @return the signed file.
+     */
+    public File fillContainer(String id, byte[] cmsSignature) throws IOException {
+        PreparedSignature preparedSignature = take(id);
+        try {
+            BatchRemoteSigner.inject(preparedSignature.file, preparedSignature.byteRange, cmsSignature);
+        } catch (IOException | RuntimeException e) {
+            pending.put(id, preparedSignature);
+            throw e;
+        }
+        appendToIndex("F " + id);
+        return preparedSignature.file;
+    }
+
+    //
+    // helper methods
+    //
+    PreparedSignature take(String id) {
+        PreparedSignature preparedSignature = id != null ? pending.remove(id) : null;
+        if (preparedSignature == null)
+            throw new IllegalArgumentException("No pending prepared document with id " + id);
+        return preparedSignature;
+    }
+
+    void loadIndex() throws IOException {
+        if (!indexFile.exists())
+            return;
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            lineNumber++;
+            if (line.isEmpty())
+                continue;
+            String[] fields = line.split(" ");
+            try {
+                if ("P".equals(fields[0]) && fields.length == 6) {
+                    String[] byteRangeFields = fields[3].split(",");
+                    int[] byteRange = new int[byteRangeFields.length];
+                    for (int i = 0; i < byteRange.length; i++)
+                        byteRange[i] = Integer.parseInt(byteRangeFields[i]);
+                    if (byteRange.length != 4)
+                        throw new IllegalArgumentException("byte range of " + byteRange.length + " entries");
+                    pending.put(fields[1], new PreparedSignature(new File(directory, fields[2]), byteRange,
+                            BASE64_DECODER.decode(fields[4]), BASE64_DECODER.decode(fields[5])));
+                } else if ("F".equals(fields[0]) && fields.length == 2) {
+                    pending.remove(fields[1]);
+                } else {
+                    throw new IllegalArgumentException("unknown entry");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException(String.format("Invalid line %d in index %s: %s", lineNumber, indexFile, e.getMessage()), e);
+            }
+        }
+    }
+
+    synchronized void appendToIndex(String line) throws IOException {
+        Files.write(indexFile.toPath(), Collections.singletonList(line), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+    }
+
+    final static Base64.Encoder BASE64_ENCODER = Base64.getEncoder();
+    final static Base64.Decoder BASE64_DECODER = Base64.getDecoder();
+
+    final File directory;
+    final File indexFile;
+    final BatchRemoteSigner signer;
+    final Map<String, PreparedSignature> pending = new ConcurrentHashMap<>();
+}
@@ -0,0 +1,435 @@
+package mkl.testarea.pdfbox2.sign;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.SignerInformationVerifier;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.bouncycastle.operator.OperatorCreationException;
+
+import mkl.testarea.pdfbox2.io.DocumentLoader;
+
+/**
+ * <p>
+ * This class validates all signatures of a signed PDF, in particular of
+ * documents with many incremental signatures. In contrast to the validation
+ * code in the <code>ValidateSignature</code> and <code>CalculateDigest</code> tests
+ * </p>
+ * <ul>
+ * <li>the file is not read into a <code>byte[]</code> but memory-mapped,
+ * and the byte ranges are digested directly from the mapped buffer without
+ * copying them first;
+ * <li>the digest over common prefixes is shared: signatures with the same
+ * digest algorithm are processed in the order of their first byte range,
+ * and a running digest over the file start is cloned for each of them, so
+ * each byte of the file is digested only once per digest algorithm in that
+ * pass;
+ * <li>the remaining second byte range of each signature is digested and the
+ * signature container is verified in a thread pool, so the signatures are
+ * verified concurrently while the running digest continues.
+ * </ul>
+ * <p>
+ * The <b>SubFilter</b> values <b>adbe.pkcs7.detached</b>, <b>ETSI.CAdES.detached</b>,
+ * and <b>adbe.pkcs7.sha1</b> are supported. Only the mathematical validity
+ * of the signatures is checked, neither certificate trust nor revocation.
+ * As BouncyCastle validates using a DER encoded representation of the signed
+ * attributes, signatures with improperly encoded signed attributes fail, see
+ * the <code>ValidateSignature</code> test <code>testValidatePkcs7DetachedFailureImproved</code>.
+ * </p>
+ * <p>
+ * The BouncyCastle security provider must be registered.
+ * </p>
+ *
+ * @author mkl
+ */
+public class SignatureValidator
+{
+    public enum Status
+    {
+        VALID, INVALID, UNSUPPORTED, ERROR
+    }
+
+    /**
+     * The validation result of a single signature.
+     */
+    public static class Result
+    {
+        Result(int index, PDSignature signature, int[] byteRange)
+        {
+            this.index = index;
+            this.name = signature.getName();
+            this.subFilter = signature.getSubFilter();
+            this.byteRange = byteRange;
+        }
+
+        /**
+         * The index of the signature in {@link PDDocument#getSignatureDictionaries()}.
+         */
+        public int getIndex()
+        {
+            return index;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public String getSubFilter()
+        {
+            return subFilter;
+        }
+
+        public int[] getByteRange()
+        {
+            return byteRange != null ? byteRange.clone() : null;
+        }
+
+        /**
+         * Whether the signature covers the whole file, i.e. whether it is
+         * the signature of the latest revision.
+         */
+        public boolean isCoveringWholeFile()
+        {
+            return coversWholeFile;
+        }
+
+        public X509CertificateHolder getSignerCertificate()
+        {
+            return signerCertificate;
+        }
+
+        public Status getStatus()
+        {
+            return status;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+
+        //
+        // Object override
+        //
+        @Override
+        public String toString()
+        {
+            return String.format("#%d %s (%s) %s: %s%s", index + 1, name, subFilter, Arrays.toString(byteRange), status,
+                    message != null ? " - " + message : "");
+        }
+
+        void setStatus(Status status, String message)
+        {
+            this.status = status;
+            this.message = message;
+        }
+
+        final int index;
+        final String name;
+        final String subFilter;
+        final int[] byteRange;
+        boolean coversWholeFile = false;
+        X509CertificateHolder signerCertificate = null;
+        Status status = Status.ERROR;
+        String message = null;
+    }
+
+    public void setDocumentLoader(DocumentLoader documentLoader)
+    {
+        this.documentLoader = documentLoader != null ? documentLoader : DocumentLoader.DEFAULT;
+    }
+
+    public List<Result> validate(File file) throws IOException
+    {
+        return validate(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Validates all signatures in the given file using a pool of the given
+     * number of threads and returns the results in the order of
+     * {@link PDDocument#getSignatureDictionaries()}.
+     */
+    public List<Result> validate(File file, int parallelism) throws IOException
+    {
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException("Parallelism must be positive.");
+        }
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Signed PDFs are limited to 2 GB by their byte ranges: " + file);
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        List<Result> results = new ArrayList<>();
+        Map<String, List<Job>> jobsByDigestAlgorithm = new LinkedHashMap<>();
+        try (PDDocument document = documentLoader.load(file))
+        {
+            int index = 0;
+            for (PDSignature signature : document.getSignatureDictionaries())
+            {
+                Result result = new Result(index++, signature, signature.getByteRange());
+                results.add(result);
+                Job job = createJob(result, signature, buffer.capacity());
+                if (job != null)
+                    jobsByDigestAlgorithm.computeIfAbsent(job.digestAlgorithmOid, oid -> new ArrayList<>()).add(job);
+            }
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<Job> jobs : jobsByDigestAlgorithm.values())
+                digestPrefixes(buffer, jobs, executorService, futures);
+
+            for (Future<?> future : futures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while validating signatures.", e);
+                }
+                catch (ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error)
+                        throw (Error) cause;
+                    // the jobs record their failures in their results
+                }
+            }
+            return results;
+        }
+        finally
+        {
+            executorService.shutdownNow();
+        }
+    }
+
+    //
+    // helper methods
+    //
+    /**
+     * Checks the byte range and parses the signature container of the given
+     * signature; returns <code>null</code> if validation cannot continue.
+     */
+    Job createJob(Result result, PDSignature signature, int fileLength)
+    {
+        int[] byteRange = result.byteRange;
+        if (byteRange == null || byteRange.length != 4 || byteRange[0] != 0 || byteRange[1] < 0
+                || byteRange[2] < byteRange[1] || byteRange[3] < 0 || (long) byteRange[2] + byteRange[3] > fileLength)
+        {
+            result.setStatus(Status.INVALID, "Invalid byte range.");
+            return null;
+        }
+        result.coversWholeFile = byteRange[2] + byteRange[3] == fileLength;
+
+        String subFilter = result.subFilter;
+        if (!"adbe.pkcs7.detached".equals(subFilter) && !"ETSI.CAdES.detached".equals(subFilter) && !"adbe.pkcs7.sha1".equals(subFilter))
+        {
+            result.setStatus(Status.UNSUPPORTED, subFilter != null ? "SubFilter " + subFilter + " not supported." : "Missing SubFilter.");
+            return null;
+        }
+
+        COSBase contents = signature.getCOSObject().getDictionaryObject(COSName.CONTENTS);
+        if (!(contents instanceof COSString))
+        {
+            result.setStatus(Status.INVALID, "Missing signature container.");
+            return null;
+        }
+
+        try
+        {
+            byte[] signatureBytes = ((COSString) contents).getBytes();
+            CMSSignedData cms = new CMSSignedData(signatureBytes);
+            Collection<SignerInformation> signers = cms.getSignerInfos().getSigners();
+            if (signers.size() != 1)
+            {
+                result.setStatus(Status.INVALID, String.format("Expected one SignerInfo, found %d.", signers.size()));
+                return null;
+            }
+            SignerInformation signerInfo = signers.iterator().next();
+            boolean sha1 = "adbe.pkcs7.sha1".equals(subFilter);
+            // for adbe.pkcs7.sha1 the SHA-1 digest of the document is the signed content
+            String digestAlgorithmOid = sha1 ? OIWObjectIdentifiers.idSHA1.getId() : signerInfo.getDigestAlgOID();
+            return new Job(result, signatureBytes, sha1 ? cms : null, digestAlgorithmOid, MessageDigest.getInstance(digestAlgorithmOid, "BC"));
+        }
+        catch (CMSException e)
+        {
+            result.setStatus(Status.INVALID, "Unparseable signature container: " + e.getMessage());
+        }
+        catch (GeneralSecurityException e)
+        {
+            result.setStatus(Status.UNSUPPORTED, "Unsupported digest algorithm: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Digests the file start once for all the given jobs of the same digest
+     * algorithm and submits each job to the executor service once the running
+     * digest reaches the end of its first byte range.
+     */
+    void digestPrefixes(ByteBuffer buffer, List<Job> jobs, ExecutorService executorService, List<Future<?>> futures)
+    {
+        // all first byte ranges start at 0, so in this order each prefix extends the former one
+        jobs.sort(Comparator.comparingInt(job -> job.result.byteRange[1]));
+        MessageDigest running = null;
+        try
+        {
+            running = MessageDigest.getInstance(jobs.get(0).digestAlgorithmOid, "BC");
+        }
+        catch (GeneralSecurityException e)
+        {
+            // cannot happen, the job digests have been created the same way
+        }
+        int position = 0;
+        for (Job job : jobs)
+        {
+            int prefixEnd = job.result.byteRange[1];
+            MessageDigest prefixDigest = null;
+            if (running != null)
+            {
+                update(running, buffer, position, prefixEnd - position);
+                position = prefixEnd;
+                try
+                {
+                    prefixDigest = (MessageDigest) running.clone();
+                }
+                catch (CloneNotSupportedException e)
+                {
+                    running = null;
+                }
+            }
+            if (prefixDigest != null)
+                job.messageDigest = prefixDigest;
+            else
+                // digest implementation without cloning support, so digest each prefix separately
+                update(job.messageDigest, buffer, 0, prefixEnd);
+            futures.add(executorService.submit(() -> {
+                complete(job, buffer);
+                return null;
+            }));
+        }
+    }
+
+    /**
+     * Digests the second byte range of the job and verifies its signature container.
+     */
+    void complete(Job job, ByteBuffer buffer)
+    {
+        Result result = job.result;
+        try
+        {
+            update(job.messageDigest, buffer, result.byteRange[2], result.byteRange[3]);
+            byte[] documentDigest = job.messageDigest.digest();
+
+            CMSSignedData cms;
+            if (job.sha1Cms != null)
+            {
+                cms = job.sha1Cms;
+                Object signedContent = cms.getSignedContent() != null ? cms.getSignedContent().getContent() : null;
+                if (!(signedContent instanceof byte[]) || !Arrays.equals(documentDigest, (byte[]) signedContent))
+                {
+                    result.setStatus(Status.INVALID, "Document digest does not match the signed content.");
+                    return;
+                }
+            }
+            else
+            {
+                cms = new CMSSignedData(Collections.singletonMap(job.digestAlgorithmOid, documentDigest), job.signatureBytes);
+            }
+
+            SignerInformation signerInfo = cms.getSignerInfos().getSigners().iterator().next();
+            @SuppressWarnings("unchecked")
+            Collection<X509CertificateHolder> matches = cms.getCertificates().getMatches(signerInfo.getSID());
+            if (matches.isEmpty())
+            {
+                result.setStatus(Status.INVALID, "Signer certificate not included.");
+                return;
+            }
+            result.signerCertificate = matches.iterator().next();
+            SignerInformationVerifier verifier = new JcaSimpleSignerInfoVerifierBuilder().setProvider("BC").build(result.signerCertificate);
+            if (signerInfo.verify(verifier))
+                result.setStatus(Status.VALID, null);
+            else
+                result.setStatus(Status.INVALID, "Signature verification failed.");
+        }
+        catch (CMSException e)
+        {
+            result.setStatus(Status.INVALID, e.getMessage());
+        }
+        catch (OperatorCreationException | GeneralSecurityException | RuntimeException e)
+        {
+            result.setStatus(Status.ERROR, e.toString());
+        }
+    }
+
+    static void update(MessageDigest messageDigest, ByteBuffer buffer, int offset, int length)
+    {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + length);
+        view.position(offset);
+        messageDigest.update(view);
+    }
+
+    /**
+     * The validation state of a single signature.
+     */
+    static class Job
+    {
+        Job(Result result, byte[] signatureBytes, CMSSignedData sha1Cms, String digestAlgorithmOid, MessageDigest messageDigest)
+        {
+            this.result = result;
+            this.signatureBytes = signatureBytes;
+            this.sha1Cms = sha1Cms;
+            this.digestAlgorithmOid = digestAlgorithmOid;
+            this.messageDigest = messageDigest;
+        }
+
+        final Result result;
+        final byte[] signatureBytes;
+        final CMSSignedData sha1Cms;
+        final String digestAlgorithmOid;
+        MessageDigest messageDigest;
+    }
+
+    DocumentLoader documentLoader = DocumentLoader.DEFAULT;
+}
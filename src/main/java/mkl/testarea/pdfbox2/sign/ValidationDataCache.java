@@ -0,0 +1,270 @@
+package mkl.testarea.pdfbox2.sign;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.util.Hex;
+
+/**
+ * <p>
+ * This class is a persistent on-disk cache of validation related data,
+ * i.e. certificates, OCSP responses, and CRLs, for building DSS and VRI
+ * entries of many documents signed by the same few CAs, see {@link DssBuilder}.
+ * </p>
+ * <p>
+ * The cache is content-addressed: the data blobs are stored once in the
+ * <code>blobs</code> sub-directory under the hex SHA-256 of their content,
+ * no matter how many lookup keys refer to them. The lookup entries are
+ * stored in the <code>entries</code> sub-directory under the hex SHA-256
+ * of their type and key; each contains the content hash of the blob and
+ * the time it expires, or a marker recording that there is no such data, so
+ * that e.g. a CA without OCSP responder is not asked again and again.
+ * Expired entries are ignored and removed on lookup;
+ * {@link #evictExpired()} removes all expired entries and the blobs no
+ * longer referenced.
+ * </p>
+ * <p>
+ * Files are written to a temporary file and then moved into place, so
+ * multiple threads or processes may share a cache directory. Entries are
+ * additionally kept in memory.
+ * </p>
+ *
+ * @author mkl
+ */
+public class ValidationDataCache {
+    public enum Type {
+        CERTIFICATE, OCSP, CRL
+    }
+
+    /**
+     * Fetches data not in the cache, e.g. from an OCSP responder; may return
+     * <code>null</code> if there is none, which is cached as missing, too.
+     */
+    public interface Fetcher {
+        byte[] fetch() throws IOException;
+    }
+
+    /**
+     * @param directory the cache directory, created if necessary.
+     * @param timeToLive the time entries stay valid after they have been stored.
+     */
+    public ValidationDataCache(File directory, long timeToLive, TimeUnit unit) throws IOException {
+        if (directory == null || timeToLive <= 0)
+            throw new IllegalArgumentException("A cache directory and a positive time to live are required.");
+        this.blobDirectory = new File(directory, "blobs");
+        this.entryDirectory = new File(directory, "entries");
+        Files.createDirectories(blobDirectory.toPath());
+        Files.createDirectories(entryDirectory.toPath());
+        this.timeToLiveMillis = unit.toMillis(timeToLive);
+    }
+
+    /**
+     * Returns the cached data of the given type for the given key, or <code>null</code>
+     * if there is none or it has expired.
+     */
+    public byte[] get(Type type, String key) throws IOException {
+        Entry entry = entry(type, key);
+        return entry != null ? entry.data : null;
+    }
+
+    /**
+     * Stores the given data of the given type for the given key and returns
+     * the hex SHA-256 content hash it is stored under.
+     */
+    public String put(Type type, String key, byte[] data) throws IOException {
+        String contentHash = hash(data);
+        Path blob = new File(blobDirectory, contentHash).toPath();
+        if (!Files.exists(blob))
+            writeAtomically(blob, data);
+        long expires = System.currentTimeMillis() + timeToLiveMillis;
+        String entryName = hash((type + ":" + key).getBytes(StandardCharsets.UTF_8));
+        writeAtomically(new File(entryDirectory, entryName).toPath(), (contentHash + " " + expires).getBytes(StandardCharsets.US_ASCII));
+        memory.put(entryName, new Entry(contentHash, expires, data));
+        return contentHash;
+    }
+
+    /**
+     * Records that there is no data of the given type for the given key.
+     */
+    public void putMissing(Type type, String key) throws IOException {
+        long expires = System.currentTimeMillis() + timeToLiveMillis;
+        String entryName = hash((type + ":" + key).getBytes(StandardCharsets.UTF_8));
+        writeAtomically(new File(entryDirectory, entryName).toPath(), (MISSING + " " + expires).getBytes(StandardCharsets.US_ASCII));
+        memory.put(entryName, new Entry(MISSING, expires, null));
+    }
+
+    /**
+     * Returns whether it is recorded and not expired yet that there is no data
+     * of the given type for the given key.
+     */
+    public boolean isMissing(Type type, String key) throws IOException {
+        Entry entry = entry(type, key);
+        return entry != null && entry.data == null;
+    }
+
+    /**
+     * Returns the cached data of the given type for the given key; if there
+     * is no entry or it has expired, fetches and stores it. If the data is
+     * recorded or fetched as missing, <code>null</code> is returned.
+     */
+    public byte[] getOrFetch(Type type, String key, Fetcher fetcher) throws IOException {
+        Entry entry = entry(type, key);
+        if (entry != null)
+            return entry.data;
+        byte[] data = fetcher.fetch();
+        if (data != null)
+            put(type, key, data);
+        else
+            putMissing(type, key);
+        return data;
+    }
+
+    /**
+     * Removes all expired entries and all blobs not referenced by a remaining
+     * entry; returns the number of removed entries. This should not run
+     * concurrently with {@link #put(Type, String, byte[])} calls on the same
+     * directory as a blob might be removed between its storage and the storage
+     * of its entry.
+     */
+    public int evictExpired() throws IOException {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        Set<String> referencedBlobs = new HashSet<>();
+        File[] entryFiles = entryDirectory.listFiles();
+        if (entryFiles != null) {
+            for (File entryFile : entryFiles) {
+                if (entryFile.getName().endsWith(".tmp"))
+                    continue;
+                String[] fields = readEntry(entryFile.toPath());
+                if (fields == null)
+                    continue;
+                if (Long.parseLong(fields[1]) <= now) {
+                    memory.remove(entryFile.getName());
+                    Files.deleteIfExists(entryFile.toPath());
+                    removed++;
+                } else if (!MISSING.equals(fields[0])) {
+                    referencedBlobs.add(fields[0]);
+                }
+            }
+        }
+        File[] blobFiles = blobDirectory.listFiles();
+        if (blobFiles != null) {
+            for (File blobFile : blobFiles) {
+                if (!referencedBlobs.contains(blobFile.getName()) && !blobFile.getName().endsWith(".tmp"))
+                    Files.deleteIfExists(blobFile.toPath());
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the hex SHA-256 hash of the given data, the name blobs are stored under.
+     */
+    public static String hash(byte[] data) {
+        try {
+            return Hex.getString(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //
+    // helper methods
+    //
+    Entry entry(Type type, String key) throws IOException {
+        String entryName = hash((type + ":" + key).getBytes(StandardCharsets.UTF_8));
+        long now = System.currentTimeMillis();
+        Entry entry = memory.get(entryName);
+        if (entry != null && entry.expires > now)
+            return entry;
+
+        Path entryPath = new File(entryDirectory, entryName).toPath();
+        String[] fields = readEntry(entryPath);
+        if (fields == null)
+            return null;
+        long expires = Long.parseLong(fields[1]);
+        if (expires <= now) {
+            memory.remove(entryName);
+            Files.deleteIfExists(entryPath);
+            return null;
+        }
+        if (MISSING.equals(fields[0])) {
+            entry = new Entry(MISSING, expires, null);
+            memory.put(entryName, entry);
+            return entry;
+        }
+        byte[] data;
+        try {
+            data = Files.readAllBytes(new File(blobDirectory, fields[0]).toPath());
+        } catch (NoSuchFileException e) {
+            // blob evicted concurrently
+            return null;
+        }
+        entry = new Entry(fields[0], expires, data);
+        memory.put(entryName, entry);
+        return entry;
+    }
+
+    static String[] readEntry(Path entryPath) throws IOException {
+        String content;
+        try {
+            content = new String(Files.readAllBytes(entryPath), StandardCharsets.US_ASCII);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        String[] fields = content.trim().split(" ");
+        if (fields.length != 2 || !fields[1].matches("\\d+"))
+            throw new IOException("Invalid cache entry " + entryPath);
+        return fields;
+    }
+
+    static void writeAtomically(Path target, byte[] data) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, data);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static class Entry {
+        Entry(String contentHash, long expires, byte[] data) {
+            this.contentHash = contentHash;
+            this.expires = expires;
+            this.data = data;
+        }
+
+        final String contentHash;
+        final long expires;
+        final byte[] data;
+    }
+
+    /**
+     * The content hash of entries recording missing data; no blob is stored for it.
+     */
+    static final String MISSING = "-";
+
+    final File blobDirectory;
+    final File entryDirectory;
+    final long timeToLiveMillis;
+    final Map<String, Entry> memory = new ConcurrentHashMap<>();
+}
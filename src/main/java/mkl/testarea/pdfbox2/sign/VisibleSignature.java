@@ -1,5 +1,6 @@
 package mkl.testarea.pdfbox2.sign;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -13,6 +14,12 @@ import java.security.NoSuchAlgorithmException;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.examples.signature.CreateSignatureBase;
@@ -29,6 +36,8 @@ import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
 import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
 import org.apache.pdfbox.util.Hex;
 
+import mkl.testarea.pdfbox2.io.DocumentLoader;
+
 /**
  * <a href="https://stackoverflow.com/questions/50224181/pdfbox-2-0-8-issue-while-signing-document">
  * PDFBox 2.0.8 issue while signing document
@@ -49,6 +58,7 @@ public class VisibleSignature extends CreateSignatureBase
     private PDVisibleSignDesigner visibleSignDesigner;
     private final PDVisibleSigProperties visibleSignatureProperties = new PDVisibleSigProperties();
     private boolean lateExternalSigning = false;
+    private DocumentLoader documentLoader = DocumentLoader.DEFAULT;
 
     public boolean isLateExternalSigning()
     {
@@ -67,6 +77,18 @@ public class VisibleSignature extends CreateSignatureBase
         this.lateExternalSigning = lateExternalSigning;
     }
 
+    /**
+     * Set the document loader used to open the documents to sign. By default
+     * {@link DocumentLoader#DEFAULT} is used which loads like {@link PDDocument#load(File)}.
+     * For large files use a loader with a mixed or temp file memory usage setting.
+     *
+     * @param documentLoader
+     */
+    public void setDocumentLoader(DocumentLoader documentLoader)
+    {
+        this.documentLoader = documentLoader != null ? documentLoader : DocumentLoader.DEFAULT;
+    }
+
     /**
      * Set visible signature designer for a new signature field.
      * 
@@ -186,21 +208,10 @@ public class VisibleSignature extends CreateSignatureBase
         
         try (
             FileOutputStream fos = new FileOutputStream(signedFile);
-            PDDocument doc = PDDocument.load(inputFile)
+            PDDocument doc = documentLoader.load(inputFile)
         ) {
-            int accessPermissions = SigUtils.getMDPPermission(doc);
-            if (accessPermissions == 1)
-            {
-                throw new IllegalStateException("No changes to the document are permitted due to DocMDP transform parameters dictionary");
-            }
-            // Note that PDFBox has a bug that visual signing on certified files with permission 2
-            // doesn't work properly, see PDFBOX-3699. As long as this issue is open, you may want to
-            // be careful with such files.
-
-            PDSignature signature;
-
             // sign a PDF with an existing empty signature, as created by the CreateEmptySignatureForm example.
-            signature = findExistingSignature(doc, signatureFieldName);
+            PDSignature signature = findExistingSignature(doc, signatureFieldName);
 
             if (signature == null)
             {
@@ -208,53 +219,13 @@ public class VisibleSignature extends CreateSignatureBase
                 signature = new PDSignature();
             }
 
-            // Optional: certify
-            // can be done only if version is at least 1.5 and if not already set
-            // doing this on a PDF/A-1b file fails validation by Adobe preflight (PDFBOX-3821)
-            // PDF/A-1b requires PDF version 1.4 max, so don't increase the version on such files.
-            if (doc.getVersion() >= 1.5f && accessPermissions == 0)
-            {
-                SigUtils.setMDPPermission(doc, signature, 2);
-            }
-
-            PDAcroForm acroForm = doc.getDocumentCatalog().getAcroForm();
-            if (acroForm != null && acroForm.getNeedAppearances())
-            {
-                // PDFBOX-3738 NeedAppearances true results in visible signature becoming invisible 
-                // with Adobe Reader
-                if (acroForm.getFields().isEmpty())
-                {
-                    // we can safely delete it if there are no fields
-                    acroForm.getCOSObject().removeItem(COSName.NEED_APPEARANCES);
-                    // note that if you've set MDP permissions, the removal of this item
-                    // may result in Adobe Reader claiming that the document has been changed.
-                    // and/or that field content won't be displayed properly.
-                    // ==> decide what you prefer and adjust your code accordingly.
-                }
-                else
-                {
-                    System.out.println("/NeedAppearances is set, signature may be ignored by Adobe Reader");
-                }
-            }
-
-            // default filter
-            signature.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
-
-            // subfilter for basic and PAdES Part 2 signatures
-            signature.setSubFilter(PDSignature.SUBFILTER_ADBE_PKCS7_DETACHED);
-
             if (visibleSignatureProperties != null)
             {
                 // this builds the signature structures in a separate document
                 visibleSignatureProperties.buildSignature();
-
-                signature.setName(visibleSignatureProperties.getSignerName());
-                signature.setLocation(visibleSignatureProperties.getSignerLocation());
-                signature.setReason(visibleSignatureProperties.getSignatureReason());
             }
-            
-            // the signing date, needed for valid signature
-            signature.setSignDate(Calendar.getInstance());
+
+            prepareSignature(doc, signature);
 
             // do not set SignatureInterface instance, if external signing used
             SignatureInterface signatureInterface = isExternalSigning() ? null : this;
@@ -324,6 +295,188 @@ public class VisibleSignature extends CreateSignatureBase
         IOUtils.closeQuietly(signatureOptions);
     }
 
+    /**
+     * Sign many pdf files concurrently, each incrementally into its own target file.
+     * <p>
+     * In contrast to {@link #signPDF(File, File, String)} the visual signature
+     * template document is built only once and re-used for all documents. Thus,
+     * all documents get the same appearance at the same position on the page
+     * configured by {@link #setVisibleSignatureProperties(String, String, String, int, int, boolean)};
+     * they should have the same page size and rotation as the document the
+     * designer has been created for.
+     * </p>
+     * <p>
+     * The documents are signed by this instance as {@link SignatureInterface}
+     * on a pool of worker threads. This is thread-safe as the CMS signature
+     * container is created from scratch for each signature, as long as the
+     * configuration of this instance is not changed during the batch. External
+     * signing is not supported here.
+     * </p>
+     *
+     * @param files maps the source pdf document files to the files to create.
+     * @param tsaUrl optional TSA url
+     * @param parallelism number of worker threads
+     * @return the failures by source file; empty if all documents have been signed.
+     * @throws IOException if waiting for the workers was interrupted
+     */
+    public Map<File, Exception> signPDFs(Map<File, File> files, String tsaUrl, int parallelism) throws IOException
+    {
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException("Parallelism must be positive.");
+        }
+        if (isExternalSigning())
+        {
+            throw new IllegalStateException("External signing is not supported in batch signing");
+        }
+
+        setTsaUrl(tsaUrl);
+
+        byte[] visualSignatureTemplate = null;
+        if (visibleSignatureProperties != null && visibleSignatureProperties.isVisualSignEnabled())
+        {
+            // this builds the signature structures in a separate document, once for all documents
+            visibleSignatureProperties.buildSignature();
+            try (InputStream visibleSignature = visibleSignatureProperties.getVisibleSignature())
+            {
+                visualSignatureTemplate = IOUtils.toByteArray(visibleSignature);
+            }
+        }
+        final byte[] template = visualSignatureTemplate;
+
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+        try
+        {
+            Map<File, Future<?>> futures = new LinkedHashMap<>();
+            for (Map.Entry<File, File> entry : files.entrySet())
+            {
+                futures.put(entry.getKey(), executorService.submit(() -> {
+                    signPDF(entry.getKey(), entry.getValue(), template);
+                    return null;
+                }));
+            }
+
+            Map<File, Exception> failures = new LinkedHashMap<>();
+            for (Map.Entry<File, Future<?>> entry : futures.entrySet())
+            {
+                try
+                {
+                    entry.getValue().get();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while batch signing.", e);
+                }
+                catch (ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error)
+                        throw (Error) cause;
+                    failures.put(entry.getKey(), (Exception) cause);
+                }
+            }
+            return failures;
+        }
+        finally
+        {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Sign a single pdf file of a batch using the given visual signature template.
+     */
+    private void signPDF(File inputFile, File signedFile, byte[] visualSignatureTemplate) throws IOException
+    {
+        try (
+            FileOutputStream fos = new FileOutputStream(signedFile);
+            PDDocument doc = documentLoader.load(inputFile)
+        ) {
+            PDSignature signature = new PDSignature();
+            prepareSignature(doc, signature);
+
+            if (visualSignatureTemplate != null)
+            {
+                // the options must not be closed before saving, see signPDF(File, File, String, String)
+                try (SignatureOptions options = new SignatureOptions())
+                {
+                    options.setVisualSignature(new ByteArrayInputStream(visualSignatureTemplate));
+                    options.setPage(visibleSignatureProperties.getPage() - 1);
+                    doc.addSignature(signature, this, options);
+                    doc.saveIncremental(fos);
+                }
+            }
+            else
+            {
+                doc.addSignature(signature, this);
+                doc.saveIncremental(fos);
+            }
+        }
+    }
+
+    /**
+     * Checks the DocMDP permissions, certifies if possible, and sets the
+     * signature dictionary entries; the visible signature properties are
+     * expected to be built already.
+     */
+    private void prepareSignature(PDDocument doc, PDSignature signature) throws IOException
+    {
+        int accessPermissions = SigUtils.getMDPPermission(doc);
+        if (accessPermissions == 1)
+        {
+            throw new IllegalStateException("No changes to the document are permitted due to DocMDP transform parameters dictionary");
+        }
+        // Note that PDFBox has a bug that visual signing on certified files with permission 2
+        // doesn't work properly, see PDFBOX-3699. As long as this issue is open, you may want to
+        // be careful with such files.
+
+        // Optional: certify
+        // can be done only if version is at least 1.5 and if not already set
+        // doing this on a PDF/A-1b file fails validation by Adobe preflight (PDFBOX-3821)
+        // PDF/A-1b requires PDF version 1.4 max, so don't increase the version on such files.
+        if (doc.getVersion() >= 1.5f && accessPermissions == 0)
+        {
+            SigUtils.setMDPPermission(doc, signature, 2);
+        }
+
+        PDAcroForm acroForm = doc.getDocumentCatalog().getAcroForm();
+        if (acroForm != null && acroForm.getNeedAppearances())
+        {
+            // PDFBOX-3738 NeedAppearances true results in visible signature becoming invisible 
+            // with Adobe Reader
+            if (acroForm.getFields().isEmpty())
+            {
+                // we can safely delete it if there are no fields
+                acroForm.getCOSObject().removeItem(COSName.NEED_APPEARANCES);
+                // note that if you've set MDP permissions, the removal of this item
+                // may result in Adobe Reader claiming that the document has been changed.
+                // and/or that field content won't be displayed properly.
+                // ==> decide what you prefer and adjust your code accordingly.
+            }
+            else
+            {
+                System.out.println("/NeedAppearances is set, signature may be ignored by Adobe Reader");
+            }
+        }
+
+        // default filter
+        signature.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
+
+        // subfilter for basic and PAdES Part 2 signatures
+        signature.setSubFilter(PDSignature.SUBFILTER_ADBE_PKCS7_DETACHED);
+
+        if (visibleSignatureProperties != null)
+        {
+            signature.setName(visibleSignatureProperties.getSignerName());
+            signature.setLocation(visibleSignatureProperties.getSignerLocation());
+            signature.setReason(visibleSignatureProperties.getSignatureReason());
+        }
+        
+        // the signing date, needed for valid signature
+        signature.setSignDate(Calendar.getInstance());
+    }
+
     // Find an existing signature (assumed to be empty). You will usually not need this.
     private PDSignature findExistingSignature(PDDocument doc, String sigFieldName)
     {
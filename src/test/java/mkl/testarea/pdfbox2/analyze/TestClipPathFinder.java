@@ -2,9 +2,12 @@ package mkl.testarea.pdfbox2.analyze;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.Assert;
 import org.junit.Test;
 
 /**
@@ -83,4 +86,54 @@ public class TestClipPathFinder
             document.close();
         }
     }
+
+    /**
+     * <a href="http://stackoverflow.com/questions/28321374/how-to-get-page-content-height-using-pdfbox">
+     * How to get page content height using pdfbox
+     * </a>
+     * <br/>
+     * <a href="http://d.pr/f/15uBF">
+     * test-pdf5.pdf
+     * </a>
+     * <p>
+     * This test finds the clip paths in interning mode and outputs the
+     * distinct clip paths with their occurrence counts. It asserts that equal
+     * clip paths are represented by the same distinct instance and that the
+     * occurrence counts add up to the number of clip paths found.
+     * </p>
+     */
+    @Test
+    public void testTestPdf5Interning() throws IOException
+    {
+        try (InputStream resource = getClass().getResourceAsStream("test-pdf5.pdf"))
+        {
+            System.out.println("test-pdf5.pdf interning");
+            PDDocument document = PDDocument.load(resource);
+            PDPage page = document.getPage(0);
+            ClipPathFinder finder = new ClipPathFinder(page);
+            finder.setInterning(true);
+            finder.findClipPaths();
+
+            Map<Path, Path> distinctPaths = new HashMap<>();
+            int occurrences = 0;
+            for (Path path : finder.getDistinctPaths())
+            {
+                System.out.printf("%d occurrences of\n%s", path.getOccurrences(), path);
+                Assert.assertNull("Distinct clip paths are equal", distinctPaths.put(path, path));
+                occurrences += path.getOccurrences();
+            }
+
+            int count = 0;
+            for (Path path : finder)
+            {
+                Assert.assertSame("Clip path not interned", distinctPaths.get(path), path);
+                count++;
+            }
+            System.out.printf("%d clip paths, %d distinct\n", count, distinctPaths.size());
+            Assert.assertTrue("More distinct than total clip paths", distinctPaths.size() <= count);
+            Assert.assertEquals("Occurrences do not add up to the clip path count", count, occurrences);
+
+            document.close();
+        }
+    }
 }
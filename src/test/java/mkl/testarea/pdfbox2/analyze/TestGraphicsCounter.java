@@ -70,4 +70,38 @@ public class TestGraphicsCounter
         }
     }
 
+    /**
+     * <a href="http://stackoverflow.com/questions/28321374/how-to-get-page-content-height-using-pdfbox">
+     * How to get page content height using pdfbox
+     * </a>
+     * <br/>
+     * <a href="https://drive.google.com/file/d/0B65bQnJhC1mvbEVQQ0o0QU9STlU/view?usp=sharing">
+     * test.pdf
+     * </a>, here as <code>test-rivu.pdf</code>
+     * <p>
+     * This test counts the operators like {@link #testCountTestLikeRivu()} but using
+     * the streaming {@link OperatorCounter}, for page 5 and the whole document.
+     * </p>
+     */
+    @Test
+    public void testCountTestWithOperatorCounter() throws IOException
+    {
+        try (   InputStream resource = getClass().getResourceAsStream("test-rivu.pdf");
+                PDDocument document = PDDocument.load(resource))
+        {
+            System.out.println("test-rivu.pdf");
+            OperatorCounter counter = new OperatorCounter();
+            OperatorStatistics documentStatistics = counter.analyze(document);
+
+            OperatorStatistics pageStatistics = counter.getPageStatistics().get(4);
+            System.out.printf("Page 5: %d lines, %d curves, %d rectangles, %d xobjects, %d clip paths\n",
+                    pageStatistics.getCount("l") + pageStatistics.getCount("h"),
+                    pageStatistics.getCount("c") + pageStatistics.getCount("v") + pageStatistics.getCount("y"),
+                    pageStatistics.getCount("re"), pageStatistics.getCount("Do"),
+                    pageStatistics.getCount("W") + pageStatistics.getCount("W*"));
+
+            System.out.printf("\nDocument: %d operators, %d bytes\n%s", documentStatistics.getTotalCount(),
+                    documentStatistics.getTotalBytes(), documentStatistics);
+        }
+    }
 }
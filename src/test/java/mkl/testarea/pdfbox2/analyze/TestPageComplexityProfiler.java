@@ -0,0 +1,44 @@
+package mkl.testarea.pdfbox2.analyze;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Test;
+
+/**
+ * @author mkl
+ */
+public class TestPageComplexityProfiler
+{
+    /**
+     * <a href="http://stackoverflow.com/questions/28321374/how-to-get-page-content-height-using-pdfbox">
+     * How to get page content height using pdfbox
+     * </a>
+     * <br/>
+     * <a href="https://drive.google.com/file/d/0B65bQnJhC1mvbEVQQ0o0QU9STlU/view?usp=sharing">
+     * test.pdf
+     * </a>, here as <code>test-rivu.pdf</code>
+     * <p>
+     * This test outputs the complexity figures of all pages of the test document
+     * and the time required to determine them.
+     * </p>
+     */
+    @Test
+    public void testProfileTestRivu() throws IOException
+    {
+        try (   InputStream resource = getClass().getResourceAsStream("test-rivu.pdf");
+                PDDocument document = PDDocument.load(resource))
+        {
+            System.out.println("test-rivu.pdf");
+            long start = System.nanoTime();
+            List<PageComplexity> complexities = new PageComplexityProfiler().profile(document);
+            long nanos = System.nanoTime() - start;
+
+            for (int i = 0; i < complexities.size(); i++)
+                System.out.printf("Page %d: %s\n", i + 1, complexities.get(i));
+            System.out.printf("Profiled %d pages in %.1f ms\n", complexities.size(), nanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package mkl.testarea.pdfbox2.content;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.junit.Test;
+
+/**
+ * <p>
+ * This test compares the {@link ContentStreamEncoding} strategies of the
+ * {@link PdfContentStreamEditor}: For each strategy all pages of a number of
+ * test documents are edited by the identity editor, and the time required
+ * and the resulting encoded content stream sizes are output.
+ * </p>
+ * <p>
+ * This is not a rigorous benchmark, merely a rough comparison. The first
+ * strategy is measured twice to get some warm-up.
+ * </p>
+ *
+ * @author mkl
+ */
+public class CompareContentStreamEncodings {
+    final static String[] CORPUS = {
+            "Cengage1.pdf", "HighPioneerFallNewsletterADApdf_2.pdf", "PDFBOX-2138.pdf", "document.pdf",
+            "gridShapesModified.pdf", "input.pdf", "kommers_annons_elite.pdf", "mwb_I_201711.pdf", "watermark.pdf" };
+
+    @Test
+    public void testCompareEncodings() throws IOException {
+        Map<String, ContentStreamEncoding> encodings = new LinkedHashMap<>();
+        encodings.put("warm-up", ContentStreamEncoding.DEFAULT);
+        encodings.put("NONE", ContentStreamEncoding.NONE);
+        encodings.put("FAST", ContentStreamEncoding.FAST);
+        encodings.put("DEFAULT", ContentStreamEncoding.DEFAULT);
+        encodings.put("BEST", ContentStreamEncoding.BEST);
+        encodings.put("ORIGINAL", ContentStreamEncoding.ORIGINAL);
+
+        System.out.printf("%-10s %12s %14s %14s %12s\n", "Encoding", "Time (ms)", "Content (B)", "Encoded (B)", "MB/s");
+        for (Map.Entry<String, ContentStreamEncoding> entry : encodings.entrySet()) {
+            long nanos = 0, contentBytes = 0, encodedBytes = 0;
+            for (String name : CORPUS) {
+                try (   InputStream resource = getClass().getResourceAsStream(name);
+                        PDDocument document = PDDocument.load(resource)) {
+                    for (PDPage page : document.getPages()) {
+                        PdfContentStreamEditor identity = new PdfContentStreamEditor(document, page);
+                        identity.setOutputEncoding(entry.getValue());
+                        long start = System.nanoTime();
+                        PDStream stream = identity.processPageDetached(page);
+                        nanos += System.nanoTime() - start;
+                        encodedBytes += stream.getCOSObject().getLength();
+                        contentBytes += decodedLength(stream);
+                    }
+                }
+            }
+            System.out.printf("%-10s %12.1f %14d %14d %12.2f\n", entry.getKey(), nanos / 1e6, contentBytes, encodedBytes,
+                    (contentBytes / 1e6) / (nanos / 1e9));
+        }
+    }
+
+    static long decodedLength(PDStream stream) throws IOException {
+        long length = 0;
+        try (InputStream inputStream = stream.createInputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) > 0)
+                length += read;
+        }
+        return length;
+    }
+}
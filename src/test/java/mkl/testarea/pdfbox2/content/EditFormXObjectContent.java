@@ -78,4 +78,61 @@ public class EditFormXObjectContent {
         }
     }
 
+    /**
+     * <a href="https://stackoverflow.com/questions/77696598/how-to-adjust-operators-and-operands-from-xobjects-with-pdfbox">
+     * How to adjust Operators and Operands from XObjects with PDFBox
+     * </a>
+     * <p>
+     * This test does the same as {@link #testInvertColorsHighPioneerFallNewsletterADApdf_2()}
+     * but shares a {@link PdfContentStreamEditor.FormXObjectCache} between the page editors
+     * which return a common configuration key. Thus, form XObjects used on multiple pages are
+     * inverted only once, not once per page.
+     * </p>
+     */
+    @Test
+    public void testInvertColorsHighPioneerFallNewsletterADApdf_2Cached() throws IOException {
+        try (   InputStream resource = getClass().getResourceAsStream("HighPioneerFallNewsletterADApdf_2.pdf");
+                PDDocument document = PDDocument.load(resource)) {
+            PdfContentStreamEditor.FormXObjectCache cache = new PdfContentStreamEditor.FormXObjectCache();
+            for (PDPage page : document.getDocumentCatalog().getPages()) {
+                PdfContentStreamEditor editor = new PdfContentStreamEditor(document, page) {
+                    @Override
+                    protected void write(ContentStreamWriter contentStreamWriter, Operator operator, List<COSBase> operands) throws IOException {
+                        String operatorString = operator.getName();
+
+                        if (RGB_FILL_COLOR_OPERATORS.contains(operatorString))
+                        {
+                            for (int i = 0; i < operands.size(); i++) {
+                                COSBase number = operands.get(i);
+                                if (number instanceof COSNumber) {
+                                    operands.set(i, new COSFloat(1.0f - ((COSNumber)number).floatValue()));
+                                }
+                            }
+                        }
+
+                        super.write(contentStreamWriter, operator, operands);
+                    }
+
+                    @Override
+                    protected Object getConfigurationKey() {
+                        // all these editors invert the same fill color operators
+                        return "invert " + RGB_FILL_COLOR_OPERATORS;
+                    }
+
+                    final List<String> RGB_FILL_COLOR_OPERATORS = Arrays.asList("rg", "sc", "scn");
+                };
+                editor.setFormXObjectCache(cache);
+                PDResources resources = page.getResources();
+                for (COSName name : resources.getXObjectNames()) {
+                    PDXObject xObject = resources.getXObject(name);
+                    if (xObject instanceof PDFormXObject) {
+                        editor.processFormXObject((PDFormXObject) xObject, page);
+                    }
+                }
+            }
+            System.out.printf("Edited %d distinct form XObjects in HighPioneerFallNewsletterADApdf_2.\n", cache.size());
+            document.save(new File(RESULT_FOLDER, "HighPioneerFallNewsletterADApdf_2-formColorsInvertedCached.pdf"));
+        }
+    }
+
 }
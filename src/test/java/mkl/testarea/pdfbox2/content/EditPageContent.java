@@ -15,6 +15,7 @@ import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.cos.COSFloat;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -22,6 +23,7 @@ import org.apache.pdfbox.pdmodel.common.PDStream;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.util.Matrix;
 import org.apache.pdfbox.util.Vector;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -62,6 +64,37 @@ public class EditPageContent {
         }
     }
 
+    /**
+     * Test identity editing using the concurrent {@link PdfContentStreamEditorDriver}.
+     * The edited page contents must equal those of sequential editing.
+     */
+    @Test
+    public void testIdentityInputParallel() throws IOException {
+        List<byte[]> sequentialContents = new ArrayList<>();
+        try (   InputStream resource = getClass().getResourceAsStream("input.pdf");
+                PDDocument document = PDDocument.load(resource)) {
+            for (PDPage page : document.getDocumentCatalog().getPages()) {
+                PdfContentStreamEditor identity = new PdfContentStreamEditor(document, page);
+                identity.processPage(page);
+                sequentialContents.add(IOUtils.toByteArray(page.getContents()));
+            }
+        }
+
+        try (   InputStream resource = getClass().getResourceAsStream("input.pdf");
+                PDDocument document = PDDocument.load(resource)) {
+            PdfContentStreamEditorDriver driver = new PdfContentStreamEditorDriver(document, PdfContentStreamEditor::new, 4);
+            driver.processPages();
+            document.save(new File(RESULT_FOLDER, "input-identity-parallel.pdf"));
+
+            List<byte[]> parallelContents = new ArrayList<>();
+            for (PDPage page : document.getDocumentCatalog().getPages())
+                parallelContents.add(IOUtils.toByteArray(page.getContents()));
+            Assert.assertEquals(sequentialContents.size(), parallelContents.size());
+            for (int i = 0; i < sequentialContents.size(); i++)
+                Assert.assertArrayEquals("Page " + (i + 1), sequentialContents.get(i), parallelContents.get(i));
+        }
+    }
+
     /**
      * <a href="http://stackoverflow.com/questions/38498431/how-to-remove-filtered-content-from-a-pdf-with-itext">
      * How to remove filtered content from a PDF with iText
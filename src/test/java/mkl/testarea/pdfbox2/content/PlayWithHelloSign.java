@@ -3,8 +3,11 @@ package mkl.testarea.pdfbox2.content;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -151,4 +154,65 @@ public class PlayWithHelloSign
             pdDocument.save(new File(RESULT_FOLDER, "input-clear-successively-zip-state-date2.pdf"));
         }
     }
+
+    /**
+     * <a href="http://stackoverflow.com/questions/41071142/pdfbox-remove-a-single-field-from-pdf">
+     * PDFBox: Remove a single field from PDF
+     * </a>
+     * <br/>
+     * <a href="https://www.dropbox.com/s/oyv1vjyhkmao1t1/input.pdf?dl=0">
+     * input.pdf
+     * </a>
+     * <p>
+     * This method applies the single pass {@link HelloSignManipulator#clearAndFillFields(Map)}
+     * to the sample document, clears the field <code>date2</code>, and replaces the value
+     * of the field <code>var1004</code> (<i>zip</i>) by digits from its old value.
+     * </p>
+     */
+    @Test
+    public void testClearAndFillInput() throws IOException
+    {
+        try (   InputStream resource = getClass().getResourceAsStream("input.pdf");
+                PDDocument pdDocument = PDDocument.load(resource)   )
+        {
+            HelloSignAnalyzer helloSignAnalyzer = new HelloSignAnalyzer(pdDocument);
+
+            HelloSignManipulator helloSignManipulator = new HelloSignManipulator(helloSignAnalyzer);
+
+            Map<String, String> values = new HashMap<>();
+            values.put("date2", null);
+            values.put("var1004", "1234");
+            helloSignManipulator.clearAndFillFields(values);
+            
+            pdDocument.save(new File(RESULT_FOLDER, "input-clear-date2-fill-zip.pdf"));
+        }
+    }
+
+    /**
+     * <a href="http://stackoverflow.com/questions/41071142/pdfbox-remove-a-single-field-from-pdf">
+     * PDFBox: Remove a single field from PDF
+     * </a>
+     * <br/>
+     * <a href="https://www.dropbox.com/s/oyv1vjyhkmao1t1/input.pdf?dl=0">
+     * input.pdf
+     * </a>
+     * <p>
+     * This method applies the {@link HelloSignBatchAnalyzer} to a number of
+     * copies of the sample document and outputs the field counts as the
+     * analyses complete.
+     * </p>
+     */
+    @Test
+    public void testBatchAnalyzeInput() throws IOException
+    {
+        File source = new File(RESULT_FOLDER, "input-hellosign-batch.pdf");
+        try (   InputStream resource = getClass().getResourceAsStream("input.pdf")   )
+        {
+            Files.copy(resource, source.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        HelloSignBatchAnalyzer batchAnalyzer = new HelloSignBatchAnalyzer(4);
+        batchAnalyzer.analyze(Collections.nCopies(16, source), (file, fields) -> 
+            System.out.printf("%s: %s fields, var1001 -> %s\n", file.getName(), fields.size(), fields.get("var1001")));
+    }
 }
@@ -5,6 +5,7 @@ import java.awt.geom.Rectangle2D;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -13,6 +14,7 @@ import org.apache.pdfbox.pdmodel.PDPageContentStream.AppendMode;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import mkl.testarea.pdfbox2.analyze.OperatorInstrumentation;
 import mkl.testarea.pdfbox2.extract.MarkedContentBoundingBoxFinder.MarkedContent;
 
 /**
@@ -70,6 +72,31 @@ public class DetermineBoundingBox {
         }
     }
 
+    /**
+     * <p>
+     * This test applies the {@link BoundingBoxFinder} with an
+     * {@link OperatorInstrumentation} to the apache.pdf test file
+     * and outputs the per operator figures.
+     * </p>
+     */
+    @Test
+    public void testApacheInstrumented() throws IOException {
+        try (   InputStream resource = getClass().getResourceAsStream("apache.pdf");
+                PDDocument pdDocument = PDDocument.load(resource)   ) {
+            OperatorInstrumentation instrumentation = new OperatorInstrumentation();
+            for (PDPage pdPage : pdDocument.getPages()) {
+                BoundingBoxFinder boxFinder = new BoundingBoxFinder(pdPage);
+                boxFinder.setInstrumentation(instrumentation);
+                boxFinder.processPage(pdPage);
+            }
+
+            System.out.printf("apache.pdf operator figures (allocation measured: %s)\n", instrumentation.isAllocationMeasured());
+            System.out.printf("%-6s %10s %14s %14s %14s %14s\n", "Op", "Count", "Nanos", "Self nanos", "Bytes", "Self bytes");
+            for (Map.Entry<String, OperatorInstrumentation.Measurement> entry : instrumentation.snapshot().entrySet())
+                System.out.printf("%-6s %s\n", entry.getKey(), entry.getValue());
+        }
+    }
+
     @Test
     public void testEMPLOYMENTCONTRACTTEMPLATEcoveredAs() throws IOException {
         try (   InputStream resource = getClass().getResourceAsStream("EMPLOYMENTCONTRACTTEMPLATE.pdf");
@@ -2,6 +2,8 @@ package mkl.testarea.pdfbox2.form;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -11,6 +13,8 @@ import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
 import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
 import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
 import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDTextField;
+import org.junit.Assert;
 import org.junit.Test;
 
 /**
@@ -86,6 +90,77 @@ public class DetermineWidgetPage
         System.out.println();
     }
 
+    /**
+     * <p>
+     * This test determines the widget pages of the sample documents using a
+     * {@link FieldIndex} and asserts that they match those found by the safe
+     * method, even for widgets without the optional page entry.
+     * </p>
+     */
+    @Test
+    public void testWithFieldIndex() throws IOException
+    {
+        for (String name : new String[] {"aFieldTwice.pdf", "test_duplicate_field2.pdf"})
+        {
+            System.out.printf("%s (field index)\n=================\n", name);
+            try (   InputStream resource = getClass().getResourceAsStream(name);
+                    PDDocument document = PDDocument.load(resource)    )
+            {
+                FieldIndex fieldIndex = new FieldIndex(document);
+                Set<String> names = new HashSet<>();
+                for (PDField field : fieldIndex.getFields())
+                {
+                    System.out.println(field.getFullyQualifiedName());
+                    // of equally named fields the first one is returned by name
+                    if (names.add(field.getFullyQualifiedName()))
+                        Assert.assertSame(field, fieldIndex.getField(field.getFullyQualifiedName()));
+                    for (PDAnnotationWidget widget : field.getWidgets())
+                    {
+                        int page = fieldIndex.getPageIndex(widget);
+                        System.out.print(widget.getAnnotationName() != null ? widget.getAnnotationName() : "(NN)");
+                        System.out.printf(" - index: %s\n", page);
+                        Assert.assertEquals(determineSafe(document, widget), page);
+                    }
+                }
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * <p>
+     * This test checks that {@link FieldIndex#remove(PDField)} of one of two
+     * equally named fields makes the other one accessible by that name.
+     * </p>
+     */
+    @Test
+    public void testFieldIndexRemoveDuplicate() throws IOException
+    {
+        try (   PDDocument document = new PDDocument()    )
+        {
+            PDAcroForm acroForm = new PDAcroForm(document);
+            document.getDocumentCatalog().setAcroForm(acroForm);
+            PDTextField first = new PDTextField(acroForm);
+            first.setPartialName("dup");
+            PDTextField second = new PDTextField(acroForm);
+            second.setPartialName("dup");
+            acroForm.getFields().add(first);
+            acroForm.getFields().add(second);
+
+            FieldIndex fieldIndex = new FieldIndex(document);
+            Assert.assertEquals(2, fieldIndex.getFields().size());
+            Assert.assertSame(first, fieldIndex.getField("dup"));
+
+            fieldIndex.remove(first);
+            Assert.assertEquals(1, fieldIndex.getFields().size());
+            Assert.assertSame(second, fieldIndex.getField("dup"));
+
+            fieldIndex.remove(second);
+            Assert.assertTrue(fieldIndex.getFields().isEmpty());
+            Assert.assertNull(fieldIndex.getField("dup"));
+        }
+    }
+
     int determineFast(PDDocument document, PDAnnotationWidget widget)
     {
         PDPage page = widget.getPage();
@@ -1,10 +1,30 @@
 package mkl.testarea.pdfbox2.form;
 
+import java.awt.color.ColorSpace;
+import java.awt.color.ICC_Profile;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
 
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -45,4 +65,102 @@ public class FillImageField {
         abd.populateAndCopy("src\\test\\resources\\mkl\\testarea\\pdfbox2\\form\\test_wo_img.pdf",
                 new File(RESULT_FOLDER, "test_wo_img-filled.pdf").getAbsolutePath(), data, false);
     }
+
+    /**
+     * <p>
+     * This test fills the image field of <code>test_wo_img.pdf</code> a few times
+     * using an {@link AcroFormPopulator} with an {@link ImageImportCache}; the image
+     * is decoded and compressed only once.
+     * </p>
+     */
+    @Test
+    public void testFillWithCachingPopulatorTestWoImg() throws IOException {
+        ImageImportCache imageImportCache = new ImageImportCache(16 * 1024 * 1024);
+        AcroFormPopulator abd = new AcroFormPopulator();
+        abd.setImageImportCache(imageImportCache);
+        Map<String, String> data = new HashMap<>();
+        data.put("test", new File("src/test/resources/mkl/testarea/pdfbox2/form/2x2colored.png").getPath());
+
+        for (int i = 0; i < 5; i++) {
+            abd.populateAndCopy(new File("src/test/resources/mkl/testarea/pdfbox2/form/test_wo_img.pdf").getPath(),
+                    new File(RESULT_FOLDER, "test_wo_img-filled-cached-" + i + ".pdf").getAbsolutePath(), data, false);
+        }
+
+        System.out.printf("Image cache hits: %d, misses: %d, footprint: %d bytes\n",
+                imageImportCache.getHits(), imageImportCache.getMisses(), imageImportCache.getFootprint());
+        Assert.assertEquals("Image cache misses", 1, imageImportCache.getMisses());
+        Assert.assertEquals("Image cache hits", 4, imageImportCache.getHits());
+    }
+
+    /**
+     * <p>
+     * This test retrieves an RGB PNG with an embedded ICC profile (<b>iCCP</b>
+     * chunk) from an {@link ImageImportCache} for two documents. PDFBox imports
+     * such a PNG with an <b>ICCBased</b> color space, i.e. with a stream nested
+     * in an array in the image dictionary. The test asserts that the ICC
+     * profile stream materialized from the cache has the original profile data.
+     * </p>
+     */
+    @Test
+    public void testImageImportCacheWithIccProfile() throws IOException {
+        byte[] profile = ICC_Profile.getInstance(ColorSpace.CS_sRGB).getData();
+        File pngFile = new File(RESULT_FOLDER, "4x4-iccp.png");
+        Files.write(pngFile.toPath(), createPngWithIccProfile(profile));
+
+        ImageImportCache imageImportCache = new ImageImportCache(16 * 1024 * 1024);
+        for (int i = 0; i < 2; i++) {
+            try (   PDDocument document = new PDDocument()  ) {
+                PDImageXObject image = imageImportCache.getImage(document, pngFile);
+                COSBase colorSpace = image.getCOSObject().getDictionaryObject(COSName.COLORSPACE);
+                Assert.assertTrue("Color space is no array: " + colorSpace, colorSpace instanceof COSArray);
+                Assert.assertEquals(COSName.ICCBASED, ((COSArray) colorSpace).getObject(0));
+                COSBase iccStream = ((COSArray) colorSpace).getObject(1);
+                Assert.assertTrue("ICC profile is no stream: " + iccStream, iccStream instanceof COSStream);
+                try (   InputStream iccData = ((COSStream) iccStream).createInputStream()   ) {
+                    Assert.assertArrayEquals("ICC profile data", profile, IOUtils.toByteArray(iccData));
+                }
+            }
+        }
+        Assert.assertEquals("Image cache misses", 1, imageImportCache.getMisses());
+        Assert.assertEquals("Image cache hits", 1, imageImportCache.getHits());
+    }
+
+    /**
+     * Creates an 8 bit RGB PNG and inserts an <b>iCCP</b> chunk with the given
+     * profile right after its <b>IHDR</b> chunk.
+     */
+    static byte[] createPngWithIccProfile(byte[] profile) throws IOException {
+        BufferedImage bufferedImage = new BufferedImage(4, 4, BufferedImage.TYPE_3BYTE_BGR);
+        for (int x = 0; x < 4; x++)
+            for (int y = 0; y < 4; y++)
+                bufferedImage.setRGB(x, y, (x * 64) << 16 | (y * 64) << 8 | 0x80);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        Assert.assertTrue("No PNG writer", ImageIO.write(bufferedImage, "png", png));
+        byte[] pngBytes = png.toByteArray();
+
+        ByteArrayOutputStream chunkData = new ByteArrayOutputStream();
+        chunkData.write("sRGB profile".getBytes(StandardCharsets.ISO_8859_1));
+        chunkData.write(0); // name terminator
+        chunkData.write(0); // compression method: deflate
+        try (   DeflaterOutputStream compressed = new DeflaterOutputStream(chunkData)   ) {
+            compressed.write(profile);
+        }
+        byte[] type = "iCCP".getBytes(StandardCharsets.ISO_8859_1);
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(chunkData.toByteArray());
+
+        // signature (8 bytes) and IHDR chunk (length, type, 13 data bytes, CRC)
+        int ihdrEnd = 8 + 4 + 4 + 13 + 4;
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(result);
+        data.write(pngBytes, 0, ihdrEnd);
+        data.writeInt(chunkData.size());
+        data.write(type);
+        chunkData.writeTo(data);
+        data.writeInt((int) crc.getValue());
+        data.write(pngBytes, ihdrEnd, pngBytes.length - ihdrEnd);
+        data.flush();
+        return result.toByteArray();
+    }
 }
@@ -1,13 +1,19 @@
 package mkl.testarea.pdfbox2.form;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
 import org.apache.pdfbox.pdmodel.font.PDType0Font;
@@ -15,6 +21,7 @@ import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceEntry;
 import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
 import org.apache.pdfbox.pdmodel.interactive.form.PDField;
 import org.apache.pdfbox.pdmodel.interactive.form.PDTextField;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -458,4 +465,103 @@ public class FillInForm
             pdDocument.close();
         }
     }
+
+    /**
+     * <p>
+     * This test fills the form in <code>testform.pdf</code> with a number of
+     * records using the {@link AcroFormFillEngine}, once into one file per
+     * record and once flattened into a single combined file.
+     * </p>
+     */
+    @Test
+    public void testFillManyWithFillEngine() throws IOException
+    {
+        byte[] template;
+        try (   InputStream originalStream = getClass().getResourceAsStream("testform.pdf") )
+        {
+            template = IOUtils.toByteArray(originalStream);
+        }
+        try (   AcroFormFillEngine engine = new AcroFormFillEngine(template) )
+        {
+            System.out.printf("Fields of testform.pdf: %s\n", engine.getFieldNames());
+
+            List<Map<String, String>> records = new ArrayList<>();
+            for (int i = 0; i < 20; i++)
+            {
+                Map<String, String> record = new HashMap<>();
+                record.put("Check1", "Record " + i);
+                record.put("Check2", String.valueOf(i * i));
+                record.put("HelloWorld", "Hello World " + i);
+                records.add(record);
+            }
+
+            File recordFolder = new File(RESULT_FOLDER, "testform-records");
+            recordFolder.mkdirs();
+            Map<Integer, Exception> failures = engine.fillAll(records, (index, record) -> new FileOutputStream(new File(recordFolder, "testform-" + index + ".pdf")));
+            Assert.assertTrue("Failures: " + failures, failures.isEmpty());
+
+            // the copies of the parsed template must not share field objects
+            try (   PDDocument first = engine.fill(records.get(0));
+                    PDDocument second = engine.fill(records.get(1)) )
+            {
+                Assert.assertEquals("Hello World 0", first.getDocumentCatalog().getAcroForm().getField("HelloWorld").getValueAsString());
+                Assert.assertEquals("Hello World 1", second.getDocumentCatalog().getAcroForm().getField("HelloWorld").getValueAsString());
+            }
+
+            engine.setFlatten(true);
+            try (   OutputStream result = new FileOutputStream(new File(RESULT_FOLDER, "testform-combined.pdf")) )
+            {
+                engine.fillAllCombined(records, result);
+            }
+        }
+
+        try (   PDDocument original = PDDocument.load(template);
+                PDDocument combined = PDDocument.load(new File(RESULT_FOLDER, "testform-combined.pdf")) )
+        {
+            Assert.assertEquals("Pages in combined document", 20 * original.getNumberOfPages(), combined.getNumberOfPages());
+        }
+    }
+
+    /**
+     * <p>
+     * This test checks that a failure while consuming the filled records stops
+     * an {@link AcroFormFillEngine} run with that failure instead of waiting
+     * for records still queued after the thread pool has been shut down.
+     * </p>
+     */
+    @Test(timeout = 60000)
+    public void testFillEngineConsumerFailure() throws IOException
+    {
+        byte[] template;
+        try (   InputStream originalStream = getClass().getResourceAsStream("testform.pdf") )
+        {
+            template = IOUtils.toByteArray(originalStream);
+        }
+        try (   AcroFormFillEngine engine = new AcroFormFillEngine(template) )
+        {
+            engine.setParallelism(2);
+            List<Map<String, String>> records = new ArrayList<>();
+            for (int i = 0; i < 20; i++)
+            {
+                Map<String, String> record = new HashMap<>();
+                record.put("HelloWorld", "Hello World " + i);
+                records.add(record);
+            }
+
+            Map<Integer, Exception> failures = new HashMap<>();
+            try
+            {
+                engine.run(records, (index, record) -> engine.fill(record), (index, document) -> {
+                    document.close();
+                    throw new IOException("Consumer failure at record " + index);
+                }, failures);
+                Assert.fail("The consumer failure must stop the run.");
+            }
+            catch (IOException e)
+            {
+                Assert.assertEquals("Consumer failure at record 0", e.getMessage());
+            }
+            Assert.assertTrue("Failures: " + failures, failures.isEmpty());
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package mkl.testarea.pdfbox2.form;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -9,12 +10,14 @@ import org.apache.pdfbox.cos.COSArray;
 import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
 import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
 import org.apache.pdfbox.pdmodel.interactive.form.PDCheckBox;
 import org.apache.pdfbox.pdmodel.interactive.form.PDField;
 import org.apache.pdfbox.pdmodel.interactive.form.PDTextField;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -113,4 +116,44 @@ public class FillInFormSaveIncremental
         }
         
     }
+
+    /**
+     * <p>
+     * This test fills the test form using an {@link IncrementalFillSession}.
+     * Setting a field to its current value is not recorded as change, so
+     * the incremental update merely contains the objects of the one field
+     * actually changed.
+     * </p>
+     */
+    @Test
+    public void testFillWithIncrementalFillSession() throws IOException
+    {
+        byte[] source;
+        try (   InputStream resource = getClass().getResourceAsStream("testform.pdf"))
+        {
+            source = IOUtils.toByteArray(resource);
+        }
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (   PDDocument document = PDDocument.load(source))
+        {
+            IncrementalFillSession session = new IncrementalFillSession(document);
+            String check1 = document.getDocumentCatalog().getAcroForm().getField("Check1").getValueAsString();
+            Assert.assertFalse("Unchanged value recorded as change", session.setValue("Check1", check1));
+            Assert.assertTrue("Changed value not recorded", session.setValue("HelloWorld", "Incremental Hello"));
+            Assert.assertEquals(1, session.getChangedFieldNames().size());
+
+            Assert.assertTrue(session.saveIncremental(result));
+        }
+        System.out.printf("Original %d bytes, incremental update %d bytes\n", source.length, result.size() - source.length);
+
+        try (   PDDocument document = PDDocument.load(result.toByteArray()))
+        {
+            Assert.assertEquals("Incremental Hello", document.getDocumentCatalog().getAcroForm().getField("HelloWorld").getValueAsString());
+        }
+        try (   FileOutputStream output = new FileOutputStream(new File(RESULT_FOLDER, "testform-filledIncrSession.pdf")))
+        {
+            output.write(result.toByteArray());
+        }
+    }
 }
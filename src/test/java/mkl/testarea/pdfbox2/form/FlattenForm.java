@@ -1,10 +1,13 @@
 package mkl.testarea.pdfbox2.form;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -69,4 +72,43 @@ public class FlattenForm {
             pdDocument.save(new File(RESULT_FOLDER, "f1040sb test-flattened.pdf"));
         }
     }
+
+    /**
+     * <p>
+     * This test flattens forms both using {@link org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm#flatten()}
+     * and the {@link ParallelFlattener} and asserts that the saved results are identical.
+     * </p>
+     */
+    @Test
+    public void testFlattenWithParallelFlattener() throws IOException {
+        for (String name : new String[] {"testform.pdf", "GeneralForbearance.pdf"}) {
+            byte[] source;
+            try (   InputStream resource = getClass().getResourceAsStream(name)    ) {
+                source = IOUtils.toByteArray(resource);
+            }
+
+            ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+            try (   PDDocument pdDocument = PDDocument.load(source)   ) {
+                pdDocument.setDocumentId(4711L);
+                pdDocument.getDocumentCatalog().getAcroForm().flatten();
+                pdDocument.save(sequential);
+            }
+
+            ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+            try (   PDDocument pdDocument = PDDocument.load(source)   ) {
+                pdDocument.setDocumentId(4711L);
+                ParallelFlattener flattener = new ParallelFlattener();
+                flattener.setParallelism(4);
+                flattener.flatten(pdDocument);
+                pdDocument.save(parallel);
+            }
+
+            String resultName = name.substring(0, name.length() - 4) + "-flattened-parallel.pdf";
+            try (   PDDocument pdDocument = PDDocument.load(parallel.toByteArray())   ) {
+                pdDocument.save(new File(RESULT_FOLDER, resultName));
+            }
+            System.out.printf("%s: sequential %d bytes, parallel %d bytes\n", name, sequential.size(), parallel.size());
+            Assert.assertArrayEquals("Parallel flattening result differs for " + name, sequential.toByteArray(), parallel.toByteArray());
+        }
+    }
 }
@@ -0,0 +1,83 @@
+package mkl.testarea.pdfbox2.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * <p>
+ * This test class loads documents using the {@link DocumentLoader} with
+ * memory mapping and a temp file only memory usage setting, and compares
+ * the results with those of the default loading.
+ * </p>
+ *
+ * @author mkl
+ */
+public class LoadWithDocumentLoader
+{
+    final static File RESULT_FOLDER = new File("target/test-outputs", "io");
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception
+    {
+        RESULT_FOLDER.mkdirs();
+    }
+
+    /**
+     * <p>
+     * This test extracts the text of the apache.pdf test file loaded
+     * memory-mapped and loaded by default and compares them.
+     * </p>
+     */
+    @Test
+    public void testApacheMapped() throws IOException
+    {
+        File file = new File("src/test/resources/mkl/testarea/pdfbox2/extract/apache.pdf");
+        DocumentLoader mappedLoader = DocumentLoader.tempFileOnly(RESULT_FOLDER);
+
+        String expected;
+        try (   PDDocument pdDocument = DocumentLoader.DEFAULT.load(file)   )
+        {
+            expected = new PDFTextStripper().getText(pdDocument);
+        }
+
+        try (   PDDocument pdDocument = mappedLoader.load(file)   )
+        {
+            String text = new PDFTextStripper().getText(pdDocument);
+            assertEquals("Text of memory-mapped document differs", expected, text);
+            pdDocument.save(new File(RESULT_FOLDER, "apache-mapped.pdf"));
+        }
+    }
+
+    /**
+     * <p>
+     * This test updates the test.pdf test file incrementally after loading
+     * it memory-mapped; saving incrementally copies the original revision
+     * from the mapped source.
+     * </p>
+     */
+    @Test
+    public void testIncrementalSaveMapped() throws IOException
+    {
+        File file = new File("src/test/resources/mkl/testarea/pdfbox2/sign/test.pdf");
+        DocumentLoader mappedLoader = DocumentLoader.mixed(1024 * 1024, RESULT_FOLDER);
+
+        File target = new File(RESULT_FOLDER, "test-mapped-incremental.pdf");
+        try (   PDDocument pdDocument = mappedLoader.load(file);
+                FileOutputStream result = new FileOutputStream(target)   )
+        {
+            pdDocument.getDocumentInformation().setTitle("Mapped");
+            pdDocument.getDocumentInformation().getCOSObject().setNeedToBeUpdated(true);
+            pdDocument.saveIncremental(result);
+        }
+        assertTrue("Original revision not copied completely", target.length() > file.length());
+    }
+}
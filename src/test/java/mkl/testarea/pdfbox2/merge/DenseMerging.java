@@ -4,6 +4,8 @@ import java.awt.Color;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -67,6 +69,34 @@ public class DenseMerging {
                         document1, document2, document3, document4, document5));
     }
 
+    /**
+     * <p>
+     * This test checks the lazy {@link PdfDenseMergeTool#mergeFiles(java.io.OutputStream, Iterable)}
+     * variant merging many files while at most one of them is open at a time.
+     * </p>
+     */
+    @Test
+    public void testWithTextFilesLazily() throws IOException {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            try (   PDDocument document = createTextDocument(new PDRectangle(0, 0, 400, 600), 
+                    Matrix.getTranslateInstance(30 + 10 * i, 300 + 20 * i),
+                    "Doc " + i + " line 1", "Doc " + i + " line 2", "Doc " + i + " line 3")   ) {
+                File file = new File(RESULT_FOLDER, "Test Lazy Text " + i + ".pdf");
+                document.save(file);
+                files.add(file);
+            }
+        }
+        List<File> inputs = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            inputs.add(files.get(i % files.size()));
+
+        PdfDenseMergeTool tool = new PdfDenseMergeTool(PDRectangle.A4, 30, 30, 10);
+        try (   OutputStream result = new FileOutputStream(new File(RESULT_FOLDER, "Merge with Text Files Lazily.pdf"))   ) {
+            tool.mergeFiles(result, inputs);
+        }
+    }
+
     PDDocument createTextDocument(PDRectangle size, Matrix textMatrix, String... lines) throws IOException {
         PDDocument document = new PDDocument();
         PDPage page = new PDPage(size);
@@ -2,8 +2,49 @@ package mkl.testarea.pdfbox2.sign;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.examples.signature.validation.AddValidationInformation;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.DigestInfo;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -12,6 +53,7 @@ public class AddVri {
 
     @BeforeClass
     public static void setUpBeforeClass() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
         RESULT_FOLDER.mkdirs();
     }
 
@@ -37,4 +79,154 @@ public class AddVri {
         File outFile = new File(RESULT_FOLDER, "AdelinVoicu-sample_signed-VRI.pdf");
         addOcspInformation.validateSignature(inFile, outFile);
     }
+
+    /**
+     * <p>
+     * This test signs a few documents with a signer certificate issued by a
+     * generated test CA and adds DSS and VRI entries using the {@link DssBuilder}.
+     * The validation data is retrieved from a local stand-in responder through a
+     * {@link ValidationDataCache}; thus, the issuer certificate and the OCSP
+     * response are fetched only once for all documents. Then the same is done
+     * with a stand-in for a CA publishing CRLs only; its missing OCSP response
+     * is cached, too, and, therefore, also only requested once.
+     * </p>
+     */
+    @Test
+    public void testDssBuilderWithStandInResponder() throws IOException, GeneralSecurityException, OperatorCreationException {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        KeyPair caKeyPair = keyPairGenerator.generateKeyPair();
+        KeyPair signerKeyPair = keyPairGenerator.generateKeyPair();
+        X500Name caName = new X500Name("CN=Stand-In CA, O=testarea");
+        X509CertificateHolder caCertificate = issue(caName, caName, caKeyPair, caKeyPair.getPrivate());
+        X509CertificateHolder signerCertificate = issue(caName, new X500Name("CN=Stand-In Signer, O=testarea"), signerKeyPair, caKeyPair.getPrivate());
+
+        File documentFile = new File("src/test/resources/mkl/testarea/pdfbox2/sign/test.pdf");
+        Map<File, File> files = new LinkedHashMap<>();
+        for (int i = 0; i < 3; i++)
+            files.put(new File(RESULT_FOLDER, "test-dss-" + i + "-source.pdf"), new File(RESULT_FOLDER, "test-dss-" + i + "-signed.pdf"));
+        for (File source : files.keySet())
+            Files.copy(documentFile.toPath(), source.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        BatchRemoteSigner.HashSigner hashSigner = hashes -> {
+            List<byte[]> signatures = new ArrayList<>();
+            try {
+                for (byte[] hash : hashes) {
+                    Signature signature = Signature.getInstance("NONEwithRSA");
+                    signature.initSign(signerKeyPair.getPrivate());
+                    signature.update(new DigestInfo(new AlgorithmIdentifier(NISTObjectIdentifiers.id_sha256, DERNull.INSTANCE), hash).getEncoded());
+                    signatures.add(signature.sign());
+                }
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e);
+            }
+            return signatures;
+        };
+        new BatchRemoteSigner(signerCertificate, new AlgorithmIdentifier(PKCSObjectIdentifiers.sha256WithRSAEncryption, DERNull.INSTANCE), hashSigner, null)
+                .sign(files);
+
+        AtomicInteger issuerFetches = new AtomicInteger();
+        AtomicInteger ocspFetches = new AtomicInteger();
+        DssBuilder.ValidationDataSource standIn = new DssBuilder.ValidationDataSource() {
+            @Override
+            public byte[] fetchIssuerCertificate(X509CertificateHolder certificate) throws IOException {
+                issuerFetches.incrementAndGet();
+                return certificate.getIssuer().equals(caName) ? caCertificate.getEncoded() : null;
+            }
+
+            @Override
+            public byte[] fetchOcspResponse(X509CertificateHolder certificate, X509CertificateHolder issuer) throws IOException {
+                ocspFetches.incrementAndGet();
+                try {
+                    CertificateID certificateId = new CertificateID(new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1),
+                            issuer, certificate.getSerialNumber());
+                    BasicOCSPResp response = new BasicOCSPRespBuilder(new RespID(issuer.getSubject()))
+                            .addResponse(certificateId, CertificateStatus.GOOD)
+                            .build(new JcaContentSignerBuilder("SHA256withRSA").build(caKeyPair.getPrivate()), null, new Date());
+                    return new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL, response).getEncoded();
+                } catch (OperatorCreationException | OCSPException e) {
+                    throw new IOException(e);
+                }
+            }
+
+            @Override
+            public byte[] fetchCrl(X509CertificateHolder certificate, X509CertificateHolder issuer) {
+                return null;
+            }
+        };
+
+        File cacheDirectory = new File(RESULT_FOLDER, "validation-data-cache");
+        ValidationDataCache cache = new ValidationDataCache(cacheDirectory, 1, TimeUnit.HOURS);
+        cache.evictExpired();
+        DssBuilder dssBuilder = new DssBuilder(standIn, cache);
+        int index = 0;
+        for (File signedFile : files.values()) {
+            File ltvFile = new File(RESULT_FOLDER, "test-dss-" + index++ + "-LTV.pdf");
+            dssBuilder.addValidationData(signedFile, ltvFile);
+
+            try (PDDocument document = PDDocument.load(ltvFile)) {
+                COSDictionary dss = document.getDocumentCatalog().getCOSObject().getCOSDictionary(COSName.getPDFName("DSS"));
+                Assert.assertNotNull("DSS in " + ltvFile, dss);
+                Assert.assertEquals("DSS Certs in " + ltvFile, 2, ((COSArray) dss.getDictionaryObject(COSName.getPDFName("Certs"))).size());
+                Assert.assertEquals("DSS OCSPs in " + ltvFile, 1, ((COSArray) dss.getDictionaryObject(COSName.getPDFName("OCSPs"))).size());
+                Assert.assertEquals("VRI entries in " + ltvFile, 1, dss.getCOSDictionary(COSName.getPDFName("VRI")).size());
+            }
+        }
+
+        System.out.printf("Issuer certificate fetches: %d, OCSP fetches: %d\n", issuerFetches.get(), ocspFetches.get());
+        // the generated certificates are new in each run, so nothing is cached from former runs
+        Assert.assertEquals("Issuer certificate fetches", 1, issuerFetches.get());
+        Assert.assertEquals("OCSP fetches", 1, ocspFetches.get());
+
+        // a CA publishing CRLs only: its missing OCSP response is cached, too
+        byte[] crl = new X509v2CRLBuilder(caName, new Date())
+                .build(new JcaContentSignerBuilder("SHA256withRSA").build(caKeyPair.getPrivate())).getEncoded();
+        AtomicInteger crlOnlyOcspFetches = new AtomicInteger();
+        AtomicInteger crlFetches = new AtomicInteger();
+        DssBuilder.ValidationDataSource crlOnly = new DssBuilder.ValidationDataSource() {
+            @Override
+            public byte[] fetchIssuerCertificate(X509CertificateHolder certificate) throws IOException {
+                return certificate.getIssuer().equals(caName) ? caCertificate.getEncoded() : null;
+            }
+
+            @Override
+            public byte[] fetchOcspResponse(X509CertificateHolder certificate, X509CertificateHolder issuer) {
+                crlOnlyOcspFetches.incrementAndGet();
+                return null;
+            }
+
+            @Override
+            public byte[] fetchCrl(X509CertificateHolder certificate, X509CertificateHolder issuer) {
+                crlFetches.incrementAndGet();
+                return crl;
+            }
+        };
+
+        File crlCacheDirectory = new File(RESULT_FOLDER, "validation-data-cache-crl");
+        ValidationDataCache crlCache = new ValidationDataCache(crlCacheDirectory, 1, TimeUnit.HOURS);
+        crlCache.evictExpired();
+        DssBuilder crlDssBuilder = new DssBuilder(crlOnly, crlCache);
+        index = 0;
+        for (File signedFile : files.values()) {
+            File ltvFile = new File(RESULT_FOLDER, "test-dss-" + index++ + "-LTV-CRL.pdf");
+            crlDssBuilder.addValidationData(signedFile, ltvFile);
+
+            try (PDDocument document = PDDocument.load(ltvFile)) {
+                COSDictionary dss = document.getDocumentCatalog().getCOSObject().getCOSDictionary(COSName.getPDFName("DSS"));
+                Assert.assertNotNull("DSS in " + ltvFile, dss);
+                Assert.assertEquals("DSS CRLs in " + ltvFile, 1, ((COSArray) dss.getDictionaryObject(COSName.getPDFName("CRLs"))).size());
+            }
+        }
+
+        System.out.printf("CRL only - OCSP fetches: %d, CRL fetches: %d\n", crlOnlyOcspFetches.get(), crlFetches.get());
+        Assert.assertEquals("OCSP fetches from CRL only CA", 1, crlOnlyOcspFetches.get());
+        Assert.assertEquals("CRL fetches", 1, crlFetches.get());
+    }
+
+    static X509CertificateHolder issue(X500Name issuer, X500Name subject, KeyPair subjectKeyPair, PrivateKey issuerKey) throws OperatorCreationException {
+        long now = System.currentTimeMillis();
+        return new JcaX509v3CertificateBuilder(issuer, BigInteger.valueOf(now).add(BigInteger.valueOf(subject.hashCode() & 0xffff)),
+                new Date(now - TimeUnit.DAYS.toMillis(1)), new Date(now + TimeUnit.DAYS.toMillis(365)), subject, subjectKeyPair.getPublic())
+                .build(new JcaContentSignerBuilder("SHA256withRSA").build(issuerKey));
+    }
 }
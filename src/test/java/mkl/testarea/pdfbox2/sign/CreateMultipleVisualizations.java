@@ -15,10 +15,14 @@ import java.security.cert.Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -54,6 +58,7 @@ import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
 import org.bouncycastle.util.Store;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -454,6 +459,65 @@ public class CreateMultipleVisualizations implements SignatureInterface {
         }
     }
 
+    /**
+     * <p>
+     * This test does the same as {@link #testCreateSignatureWithMultipleImageOnlyVisualizations()}
+     * and {@link #testCreateSignatureWithMultipleRotationAwareImageOnlyVisualizations()} but
+     * with a single {@link SignatureAppearanceFactory} for both documents. Thus, the image is
+     * imported once and drawn once per size and rotation, and all widgets of a document share
+     * one appearance.
+     * </p>
+     */
+    @Test
+    public void testCreateSignatureWithMultipleCachedImageOnlyVisualizations() throws IOException {
+        byte[] image;
+        try (InputStream imageResource = getClass().getResourceAsStream("/mkl/testarea/pdfbox2/content/Willi-1.jpg")) {
+            image = ByteStreams.toByteArray(imageResource);
+        }
+
+        try (SignatureAppearanceFactory factory = new SignatureAppearanceFactory()) {
+            String[][] inputs = {
+                    {"/mkl/testarea/pdfbox2/analyze/test-rivu.pdf", "testSignedMultipleCachedImageOnlyVisualizations.pdf"},
+                    {"1rotate90-rotated.pdf", "1rotate90-rotatedSignedMultipleCachedImageOnlyVisualizations.pdf"}
+            };
+            for (String[] input : inputs) {
+                try (   InputStream resource = getClass().getResourceAsStream(input[0]);
+                        OutputStream result = new FileOutputStream(new File(RESULT_FOLDER, input[1]));
+                        PDDocument pdDocument = PDDocument.load(resource)   )
+                {
+                    PDAcroForm acroForm = pdDocument.getDocumentCatalog().getAcroForm();
+                    if (acroForm == null) {
+                        pdDocument.getDocumentCatalog().setAcroForm(acroForm = new PDAcroForm(pdDocument));
+                    }
+                    acroForm.setSignaturesExist(true);
+                    acroForm.setAppendOnly(true);
+                    acroForm.getCOSObject().setDirect(true);
+
+                    PDRectangle rectangle = new PDRectangle(100, 600, 300, 100);
+                    PDSignature signature = new PDSignature();
+                    signature.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
+                    signature.setSubFilter(PDSignature.SUBFILTER_ADBE_PKCS7_DETACHED);
+                    signature.setName("Example User");
+                    signature.setLocation("Los Angeles, CA");
+                    signature.setReason("Testing");
+                    signature.setSignDate(Calendar.getInstance());
+                    pdDocument.addSignature(signature, this);
+
+                    Set<COSStream> appearances = Collections.newSetFromMap(new IdentityHashMap<>());
+                    for (PDPage pdPage : pdDocument.getPages()) {
+                        PDSignatureField field = factory.addImageSignatureField(pdDocument, pdPage, rectangle, signature, image);
+                        appearances.add(field.getWidgets().get(0).getNormalAppearanceStream().getCOSObject());
+                    }
+                    Assert.assertEquals("Distinct appearance streams in " + input[0], 1, appearances.size());
+
+                    pdDocument.saveIncremental(result);
+                }
+            }
+            System.out.printf("Templates drawn: %d, images imported: %d\n", factory.getTemplateCount(), factory.getImageCount());
+            Assert.assertEquals("Images imported", 1, factory.getImageCount());
+        }
+    }
+
 
     /**
      * Copy of <code>org.apache.pdfbox.examples.signature.CreateSignatureBase.sign(InputStream)</code>
@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.MessageDigest;
@@ -22,7 +23,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -71,6 +74,7 @@ import org.bouncycastle.operator.bc.BcDigestCalculatorProvider;
 import org.bouncycastle.operator.bc.BcRSAContentSignerBuilder;
 import org.bouncycastle.util.Store;
 import org.bouncycastle.util.encoders.Hex;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -554,6 +558,33 @@ public class CreateSignature
         signing.signPDF(documentFile, signedDocumentFile, null);
     }
 
+    /**
+     * <p>
+     * This test batch signs a number of copies of the test.pdf file with
+     * {@link VisibleSignature#signPDFs(Map, String, int)} which builds the
+     * visual signature template only once and signs on a worker pool.
+     * </p>
+     */
+    @Test
+    public void testBatchSignVisibly() throws IOException, GeneralSecurityException {
+        File documentFile = new File("src/test/resources/mkl/testarea/pdfbox2/sign/test.pdf");
+
+        Map<File, File> files = new LinkedHashMap<>();
+        for (int i = 0; i < 8; i++) {
+            File copy = new File(RESULT_FOLDER, "test-batch-" + i + ".pdf");
+            Files.copy(documentFile.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            files.put(copy, new File(RESULT_FOLDER, "test-batch-" + i + "-signed.pdf"));
+        }
+
+        VisibleSignature signing = new VisibleSignature(ks, PASSWORD.clone());
+        try (   InputStream imageStream = getClass().getResourceAsStream("/mkl/testarea/pdfbox2/content/Willi-1.jpg")) {
+            signing.setVisibleSignDesigner(documentFile.getPath(), 50, 100, -50, imageStream, 1);
+        }
+        signing.setVisibleSignatureProperties("name", "location", "Security", 0, 1, true);
+        Map<File, Exception> failures = signing.signPDFs(files, null, 4);
+        Assert.assertTrue("Batch signing failures: " + failures, failures.isEmpty());
+    }
+
     /**
      * <a href="https://stackoverflow.com/questions/59027388/signing-pdf-with-multiple-signature-fields-using-pdfbox-2-0-17">
      * Signing PDF with multiple signature fields using PDFBox 2.0.17
@@ -7,6 +7,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.MessageDigest;
@@ -15,8 +17,14 @@ import java.security.Security;
 import java.security.Signature;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.pdfbox.examples.signature.SigUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -53,6 +61,7 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.ContentSigner;
 import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -295,6 +304,76 @@ public class RemoteSigning {
         }
     }
 
+    /**
+     * <p>
+     * This test signs a batch of copies of the test.pdf file with the
+     * {@link BatchRemoteSigner} which requests all hash signatures from
+     * the remote service in a single call; here {@link #signHash(Object, Object, Object, byte[])}
+     * serves as local stand-in for the service.
+     * </p>
+     */
+    @Test
+    public void testBatchSignWithStandIn() throws IOException, GeneralSecurityException {
+        File documentFile = new File("src/test/resources/mkl/testarea/pdfbox2/sign/test.pdf");
+        Map<File, File> files = new LinkedHashMap<>();
+        for (int i = 0; i < 5; i++) {
+            File copy = new File(RESULT_FOLDER, "test-remote-batch-" + i + ".pdf");
+            Files.copy(documentFile.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            files.put(copy, new File(RESULT_FOLDER, "test-remote-batch-" + i + "-signed.pdf"));
+        }
+
+        List<Integer> batchSizes = new ArrayList<>();
+        BatchRemoteSigner.HashSigner standIn = hashes -> {
+            batchSizes.add(hashes.size());
+            List<byte[]> signatures = new ArrayList<>();
+            try {
+                for (byte[] hash : hashes)
+                    signatures.add(signHash(null, null, null, hash));
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e);
+            }
+            return signatures;
+        };
+
+        BatchRemoteSigner signer = new BatchRemoteSigner(new X509CertificateHolder(chain[0].getEncoded()),
+                new AlgorithmIdentifier(PKCSObjectIdentifiers.sha256WithRSAEncryption, DERNull.INSTANCE), standIn, null);
+        signer.sign(files);
+
+        Assert.assertEquals("Expected a single batched call", Collections.singletonList(5), batchSizes);
+    }
+
+    /**
+     * <p>
+     * This test prepares documents for signing in a {@link SignaturePlaceholderPool},
+     * then re-opens the pool from its index file as after a restart and fills
+     * in signatures created by the stand-in for the remote signing service.
+     * </p>
+     */
+    @Test
+    public void testPlaceholderPoolWithStandIn() throws IOException, GeneralSecurityException {
+        File documentFile = new File("src/test/resources/mkl/testarea/pdfbox2/sign/test.pdf");
+        File poolDirectory = new File(RESULT_FOLDER, "placeholder-pool");
+        new File(poolDirectory, SignaturePlaceholderPool.INDEX_FILE_NAME).delete();
+
+        BatchRemoteSigner signer = new BatchRemoteSigner(new X509CertificateHolder(chain[0].getEncoded()),
+                new AlgorithmIdentifier(PKCSObjectIdentifiers.sha256WithRSAEncryption, DERNull.INSTANCE), null, null);
+
+        SignaturePlaceholderPool pool = new SignaturePlaceholderPool(poolDirectory, signer);
+        List<String> ids = pool.prepareAll(Collections.nCopies(3, documentFile));
+
+        SignaturePlaceholderPool reopenedPool = new SignaturePlaceholderPool(poolDirectory, signer);
+        Assert.assertEquals("Pending ids after reopening", new HashSet<>(ids), new HashSet<>(reopenedPool.getPendingIds()));
+        for (String id : ids) {
+            byte[] hash = reopenedPool.get(id).getHashToSign();
+            File signedFile = reopenedPool.fill(id, signHash(null, null, null, hash));
+            try (PDDocument document = PDDocument.load(signedFile)) {
+                Assert.assertEquals("Signatures in " + signedFile, 1, document.getSignatureDictionaries().size());
+            }
+        }
+
+        Assert.assertTrue("No pending ids expected", new SignaturePlaceholderPool(poolDirectory, signer).getPendingIds().isEmpty());
+    }
+
     File createVisualSignatureTemplate(PDDocument document, int i, PDRectangle rect, PDSignature signature) {
         // TODO Auto-generated method stub
         return null;
@@ -6,6 +6,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.URL;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
@@ -21,10 +22,12 @@ import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.ExternalSigningSupport;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
 import org.apache.pdfbox.pdmodel.interactive.digitalsignature.SignatureInterface;
+import org.apache.pdfbox.util.Hex;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.OperatorException;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -93,4 +96,50 @@ public class SignPadesBc {
         }
     }
 
+    /**
+     * <p>
+     * This test generates a PAdES BASELINE-B signature in a late external
+     * signing manner: the document is saved with an empty signature first,
+     * then the signature container is created for the byte ranges of the
+     * saved file using {@link PadesSignatureContainerBc#sign(File, int[])}
+     * and injected at the placeholder position.
+     * </p>
+     */
+    @Test
+    public void testSignPadesBaselineBFromFile() throws IOException, GeneralSecurityException, OperatorException {
+        File resultFile = new File(RESULT_FOLDER, "PadesBcFromFile.pdf");
+        PadesSignatureContainerBc signatureContainer = new PadesSignatureContainerBc(new X509CertificateHolder(chain[0].getEncoded()),
+                new JcaContentSignerBuilder("SHA512withRSA").build(pk), null);
+        signatureContainer.setBufferSize(4096);
+
+        int[] byteRange;
+        byte[] streamDigest;
+        try (   InputStream resource = getClass().getResourceAsStream("test.pdf");
+                OutputStream result = new FileOutputStream(resultFile);
+                PDDocument pdDocument = PDDocument.load(resource)   )
+        {
+            PDSignature signature = new PDSignature();
+            signature.setFilter(COSName.getPDFName("MKLx_PAdES_SIGNER"));
+            signature.setSubFilter(COSName.getPDFName("ETSI.CAdES.detached"));
+            signature.setName("Example User");
+            signature.setSignDate(Calendar.getInstance());
+            pdDocument.addSignature(signature);
+
+            ExternalSigningSupport externalSigning = pdDocument.saveIncrementalForExternalSigning(result);
+            streamDigest = signatureContainer.digest(externalSigning.getContent());
+            // this saves the file with a 0 signature
+            externalSigning.setSignature(new byte[0]);
+            byteRange = signature.getByteRange();
+        }
+
+        Assert.assertArrayEquals("Digest of file byte ranges differs from digest of signed content stream",
+                streamDigest, signatureContainer.digest(resultFile, byteRange));
+
+        byte[] cmsSignature = signatureContainer.sign(resultFile, byteRange);
+        try (RandomAccessFile raf = new RandomAccessFile(resultFile, "rw")) {
+            // add 1 because of "<"
+            raf.seek(byteRange[1] + 1);
+            raf.write(Hex.getBytes(cmsSignature));
+        }
+    }
 }
@@ -195,6 +195,27 @@ public class ValidateSignature
         }
     }
 
+    /**
+     * <p>
+     * This test validates the signatures of a number of signed test files
+     * using the memory-mapping, parallel {@link SignatureValidator}.
+     * </p>
+     */
+    @Test
+    public void testValidateWithSignatureValidator() throws Exception
+    {
+        SignatureValidator validator = new SignatureValidator();
+        for (String name : new String[] {"SignatureVlidationTest.pdf", "Fillable-2s.pdf", "TEST-signed-pades-baseline-b.pdf", "usf_02_00_Contents.pdf"})
+        {
+            System.out.printf("\nValidate signatures in %s using SignatureValidator.\n", name);
+            List<SignatureValidator.Result> results = validator.validate(new File("src/test/resources/mkl/testarea/pdfbox2/sign", name));
+            for (SignatureValidator.Result result : results)
+                System.out.printf("    %s\n", result);
+            if ("SignatureVlidationTest.pdf".equals(name))
+                Assert.assertEquals(SignatureValidator.Status.VALID, results.get(0).getStatus());
+        }
+    }
+
     boolean validateSignaturesImproved(byte[] pdfByte, String signatureFileName) throws IOException, CMSException, OperatorCreationException, GeneralSecurityException
     {
         boolean result = true;